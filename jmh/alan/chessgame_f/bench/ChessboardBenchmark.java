@@ -0,0 +1,91 @@
+package alan.chessgame_f.bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * The chess-board in the standard startup, and a knight hopping out and back on a board of its own.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ChessboardBenchmark {
+	
+	private final static Coordinate2D BOUND_A = Coordinate2D.of(0, 0);
+	private final static Coordinate2D BOUND_B = Coordinate2D.of(7, 7);
+	private final static Coordinate2D B1 = Coordinate2D.of(1, 0);
+	private final static Coordinate2D C3 = Coordinate2D.of(2, 2);
+	
+	private Chessboard startup;
+	private Map<Coordinate2D, Piece> startupGrid;
+	private final int[] moves = new int[Move.MAX_MOVES];
+	
+	private Chessboard chessboard;
+	private boolean back;
+	
+	@Setup
+	public void setup() {
+		startup = new Chessboard();
+		Chessboard.standardStartup(startup);
+		startupGrid = startup.getGrid();
+		chessboard = new Chessboard();
+		Chessboard.standardStartup(chessboard);
+	}
+	
+	/**
+	 * Of all the white pieces.
+	 */
+	@Benchmark
+	public int getValidMoves() {
+		int count = 0;
+		for (Map.Entry<Coordinate2D, Piece> entry : startupGrid.entrySet()) {
+			Piece piece = entry.getValue();
+			if(piece.side != Side.WHITE) continue;
+			count += piece.getValidMoves(startupGrid, entry.getKey(), BOUND_A, BOUND_B).size();
+		}
+		return count;
+	}
+	
+	@Benchmark
+	public int generateMoves() {
+		return startup.generateMoves(Side.WHITE, moves);
+	}
+	
+	@Benchmark
+	public Map<Coordinate2D, Piece> getGrid() {
+		return startup.getGrid();
+	}
+	
+	@Benchmark
+	public Piece[][] toArray() {
+		return startup.toArray();
+	}
+	
+	@Benchmark
+	public Piece[][] toArrayOfGrid() {
+		return Chessboard.toArray(startupGrid);
+	}
+	
+	@Benchmark
+	public long move() {
+		if(back) chessboard.move(C3, B1);
+		else chessboard.move(B1, C3);
+		back = !back;
+		return chessboard.getVersion();
+	}
+
+}
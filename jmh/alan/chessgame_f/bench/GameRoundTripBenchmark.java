@@ -0,0 +1,111 @@
+package alan.chessgame_f.bench;
+
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import alan.chessgame_f.ChessGame;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.io.Joystick;
+import alan.chessgame_f.io.Visualizer;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * Both knights hop out and back forever, each call is one move from
+ * {@link Joystick#move(Coordinate2D, Coordinate2D)} until the turn changes.
+ * Every iteration plays a game of its own, only the white seat is watched.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class GameRoundTripBenchmark {
+	
+	private final static Coordinate2D[][] SHUFFLE = {
+			{Coordinate2D.of(1, 0), Coordinate2D.of(2, 2)},
+			{Coordinate2D.of(1, 7), Coordinate2D.of(2, 5)},
+			{Coordinate2D.of(2, 2), Coordinate2D.of(1, 0)},
+			{Coordinate2D.of(2, 5), Coordinate2D.of(1, 7)}
+	};
+	
+	private final Seat white = new Seat();
+	private ChessGame chessGame;
+	private Thread gameThread;
+	private int ply;
+	
+	@Setup(Level.Iteration)
+	public void startGame() {
+		chessGame = new ChessGame();
+		chessGame.setVisualizer(white, Side.WHITE);
+		chessGame.setVisualizer(new Seat(), Side.BLACK);
+		white.turnChanges.drainPermits();
+		ply = 0;
+		gameThread = new Thread(chessGame, "Benchmark game");
+		gameThread.setDaemon(true);
+		gameThread.start();
+		white.acquireTurn();
+	}
+	
+	@Benchmark
+	public int move() {
+		Coordinate2D[] move = SHUFFLE[ply & 3];
+		Joystick joystick = (ply & 1) == 0 ? chessGame.whiteJoystick : chessGame.blackJoystick;
+		joystick.move(move[0], move[1]);
+		white.acquireTurn();
+		return ++ply;
+	}
+	
+	@TearDown(Level.Iteration)
+	public void quitGame() throws InterruptedException {
+		(ply % 2 == 0 ? chessGame.whiteJoystick : chessGame.blackJoystick).quit();
+		gameThread.join();
+	}
+	
+	private final static class Seat implements Visualizer {
+		
+		final Semaphore turnChanges = new Semaphore(0);
+		
+		void acquireTurn() {
+			try {
+				turnChanges.acquire();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		@Override
+		public void onTurnChanges(Side side) {
+			turnChanges.release();
+		}
+		
+		@Override
+		public void onInvalidMove(Coordinate2D coord, Coordinate2D dest, Piece piece) {}
+		
+		@Override
+		public void onChessboardUpdate(Map<Coordinate2D, Piece> chessboard) {}
+		
+		@Override
+		public void onGameover(Side side) {}
+		
+		@Override
+		public void onMessage(String message) {}
+		
+		@Override
+		public void onAscend(Coordinate2D coord) {}
+		
+		@Override
+		public void onCanTranslocation(Coordinate2D coord) {}
+	
+	}
+
+}
@@ -0,0 +1,68 @@
+package alan.chessgame_f.bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.chess.PieceFactory;
+import alan.chessgame_f.chess.PieceType;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * The rules of each piece type, alone on D4 with a clear path, except the pawn which goes E2 to E4.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class RulesBenchmark {
+	
+	private final static Coordinate2D BOUND_A = Coordinate2D.of(0, 0);
+	private final static Coordinate2D BOUND_B = Coordinate2D.of(7, 7);
+	
+	@Param({"KING", "QUEEN", "KNIGHT", "ROOK", "PAWN", "BISHOP"})
+	public PieceType type;
+	
+	private Map<Coordinate2D, Piece> grid;
+	private Piece piece;
+	private Coordinate2D src;
+	private Coordinate2D dest;
+	
+	@Setup
+	public void setup() {
+		switch(type) {
+		case KING: src = Coordinate2D.of(3, 3); dest = Coordinate2D.of(4, 4); break;
+		case QUEEN: src = Coordinate2D.of(3, 3); dest = Coordinate2D.of(0, 6); break;
+		case KNIGHT: src = Coordinate2D.of(3, 3); dest = Coordinate2D.of(4, 5); break;
+		case ROOK: src = Coordinate2D.of(3, 3); dest = Coordinate2D.of(3, 7); break;
+		case PAWN: src = Coordinate2D.of(4, 1); dest = Coordinate2D.of(4, 3); break;
+		case BISHOP: src = Coordinate2D.of(3, 3); dest = Coordinate2D.of(7, 7); break;
+		default: throw new IllegalStateException("Unknown type: " + type);
+		}
+		Chessboard chessboard = new Chessboard();
+		chessboard.ascend(src, PieceFactory.createPiece(Side.WHITE, type));
+		grid = chessboard.getGrid();
+		piece = grid.get(src);
+	}
+	
+	@Benchmark
+	public boolean isMoveValid() {
+		return piece.isMoveValid(grid, src, dest);
+	}
+	
+	@Benchmark
+	public int getValidMoves() {
+		return piece.getValidMoves(grid, src, BOUND_A, BOUND_B).size();
+	}
+
+}
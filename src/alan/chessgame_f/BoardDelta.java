@@ -0,0 +1,115 @@
+package alan.chessgame_f;
+
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.io.DeltaVisualizer;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * What changed on the chess-board between two sequence numbers, see {@link DeltaVisualizer}. <br>
+ * Every move of a game is one delta. When a visualizer lags, the deltas waiting for it are coalesced into one,
+ * with the squares of all of them and the position after the last.
+ * A resync has every square changed, it's sent when a visualizer joins or asks for one.
+ * It's immutable, the same delta goes to every visualizer.
+ */
+public final class BoardDelta {
+	
+	/**
+	 * The sequence number the visualizer should be at before this delta, -1 for a resync.
+	 */
+	public final long since;
+	public final long sequence;
+	/**
+	 * Squares whose piece changed, as bits of y*8+x.
+	 */
+	public final long changed;
+	/**
+	 * Squares a piece was taken from, the pawn's own square for en-passant.
+	 */
+	public final long captured;
+	/**
+	 * Squares a pawn ascended on.
+	 */
+	public final long promoted;
+	/**
+	 * The move played, see {@link Move}, 0 for a resync or deltas coalesced.
+	 */
+	public final int move;
+	
+	private final BoardSnapshot snapshot;
+	
+	private BoardDelta(long since, long sequence, long changed, long captured, long promoted, int move, BoardSnapshot snapshot) {
+		this.since = since;
+		this.sequence = sequence;
+		this.changed = changed;
+		this.captured = captured;
+		this.promoted = promoted;
+		this.move = move;
+		this.snapshot = snapshot;
+	}
+	
+	static BoardDelta resync(long sequence, BoardSnapshot snapshot) {
+		return new BoardDelta(-1, sequence, -1L, 0, 0, 0, snapshot);
+	}
+	
+	/**
+	 * @param move The move that led from the position of the previous delta to the snapshot
+	 */
+	static BoardDelta of(BoardDelta previous, BoardSnapshot snapshot, int move) {
+		BoardSnapshot before = previous.snapshot;
+		long changed = 0;
+		for(long squares = before.getOccupancy() | snapshot.getOccupancy(); squares != 0; squares &= squares - 1) {
+			int square = Long.numberOfTrailingZeros(squares);
+			if(before.getPiece(square) != snapshot.getPiece(square)) changed |= 1L << square;
+		}
+		// The other side's pieces only leave the board by being taken
+		Side opponent = snapshot.getPiece(Move.to(move)).side == Side.WHITE ? Side.BLACK : Side.WHITE;
+		long captured = before.getOccupancy(opponent) & ~snapshot.getOccupancy(opponent);
+		long promoted = Move.getAscendType(move) != null ? 1L << Move.to(move) : 0;
+		return new BoardDelta(previous.sequence, previous.sequence + 1, changed, captured, promoted, move, snapshot);
+	}
+	
+	/**
+	 * @param later The delta right after this one, or a resync
+	 * @return One delta from this one's sequence to the later one's
+	 */
+	BoardDelta coalesce(BoardDelta later) {
+		if(later.isResync() || isResync()) return resync(Math.max(sequence, later.sequence), later.snapshot);
+		return new BoardDelta(since, later.sequence, changed | later.changed,
+				captured | later.captured, promoted | later.promoted, 0, later.snapshot);
+	}
+	
+	public boolean isResync() {
+		return since < 0;
+	}
+	
+	/**
+	 * @return Whether there's more than one move in it
+	 */
+	public boolean isCoalesced() {
+		return !isResync() && sequence - since > 1;
+	}
+	
+	public Piece getPiece(int square) {
+		return snapshot.getPiece(square);
+	}
+	
+	public Piece getPiece(Coordinate2D coord) {
+		return snapshot.getPiece(coord);
+	}
+	
+	/**
+	 * @return The whole position after the delta
+	 */
+	public BoardSnapshot getSnapshot() {
+		return snapshot;
+	}
+	
+	@Override
+	public String toString() {
+		if(isResync()) return "BoardDelta[resync " + sequence + "]";
+		return "BoardDelta[" + since + " -> " + sequence + ", changed " + Long.toHexString(changed)
+				+ (move != 0 ? ", " + Move.toString(move) : "") + "]";
+	}
+
+}
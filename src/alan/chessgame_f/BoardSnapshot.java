@@ -0,0 +1,153 @@
+package alan.chessgame_f;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import alan.chessgame_f.chess.OccupancyGrid;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * View of a chess-board at one version, which piece stands where never changes. <br>
+ * It's shared by every reader, so nothing is copied or locked while reading it.
+ * Like {@link Chessboard#getGrid()}, the piece instances are the same ones standing on the chess-board,
+ * so it's not immutable all the way: the moved and double jump status of a pawn goes on with the game.
+ * Only the squares, types and sides are of this version.
+ */
+public final class BoardSnapshot {
+	
+	public final long version;
+	/**
+	 * See {@link Chessboard#getKey()}
+	 */
+	public final long key;
+	
+	private final Piece[] squares;
+	private final int size;
+	private final long[] occupancies = new long[2];
+	private final Map<Coordinate2D, Piece> grid;
+	
+	BoardSnapshot(long version, long key, Piece[] squares) {
+		this.version = version;
+		this.key = key;
+		this.squares = squares.clone();
+		int size = 0;
+		for (int square = 0; square < 64; square++) {
+			Piece piece = squares[square];
+			if(piece == null) continue;
+			occupancies[piece.side.ordinal()] |= 1L << square;
+			size++;
+		}
+		this.size = size;
+		this.grid = new GridView();
+	}
+	
+	public Piece getPiece(int square) {
+		return squares[square];
+	}
+	
+	public Piece getPiece(Coordinate2D coord) {
+		if(coord == null || !Chessboard.isOnBoard(coord)) return null;
+		return squares[Chessboard.square(coord)];
+	}
+	
+	public long getOccupancy() {
+		return occupancies[0] | occupancies[1];
+	}
+	
+	public long getOccupancy(Side side) {
+		return occupancies[side.ordinal()];
+	}
+	
+	/**
+	 * @return A read-only grid backed by this snapshot, it's an {@link OccupancyGrid} as well.
+	 */
+	public Map<Coordinate2D, Piece> getGrid() {
+		return grid;
+	}
+	
+	public Piece[][] toArray() {
+		Piece[][] pieces = new Piece[8][8];
+		for (int square = 0; square < 64; square++) {
+			pieces[square & 7][square >>> 3] = squares[square];
+		}
+		return pieces;
+	}
+	
+	private final class GridView extends AbstractMap<Coordinate2D, Piece> implements OccupancyGrid {
+		
+		private final Set<Entry<Coordinate2D, Piece>> entrySet = new AbstractSet<Entry<Coordinate2D, Piece>>() {
+			
+			@Override
+			public Iterator<Entry<Coordinate2D, Piece>> iterator() {
+				return new Iterator<Entry<Coordinate2D, Piece>>() {
+					
+					private int square = seek(0);
+					
+					@Override
+					public boolean hasNext() {
+						return square < 64;
+					}
+					
+					@Override
+					public Entry<Coordinate2D, Piece> next() {
+						if(square >= 64) throw new NoSuchElementException();
+						Entry<Coordinate2D, Piece> entry =
+								new SimpleImmutableEntry<>(Coordinate2D.of(square), squares[square]);
+						square = seek(square + 1);
+						return entry;
+					}
+				
+				};
+			}
+			
+			@Override
+			public int size() {
+				return size;
+			}
+		
+		};
+		
+		@Override
+		public Set<Entry<Coordinate2D, Piece>> entrySet() {
+			return entrySet;
+		}
+		
+		@Override
+		public Piece get(Object key) {
+			if(key instanceof Coordinate2D) return getPiece((Coordinate2D) key);
+			return null;
+		}
+		
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+		
+		@Override
+		public int size() {
+			return size;
+		}
+		
+		@Override
+		public long getOccupancy() {
+			return BoardSnapshot.this.getOccupancy();
+		}
+		
+		@Override
+		public long getOccupancy(Side side) {
+			return BoardSnapshot.this.getOccupancy(side);
+		}
+		
+		private int seek(int square) {
+			while(square < 64 && squares[square] == null) square++;
+			return square;
+		}
+	
+	}
+
+}
@@ -1,18 +1,27 @@
 package alan.chessgame_f;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.Condition;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import alan.chessgame_f.chess.Move;
 import alan.chessgame_f.chess.PawnAccess;
 import alan.chessgame_f.chess.Piece;
 import alan.chessgame_f.chess.PieceFactory;
 import alan.chessgame_f.chess.PieceType;
+import alan.chessgame_f.io.DeltaVisualizer;
 import alan.chessgame_f.io.Joystick;
 import alan.chessgame_f.io.Visualizer;
+import alan.chessgame_f.record.GameRecord;
 import alan.chessgame_f.util.Coordinate2D;
 
 public final class ChessGame implements Runnable {
@@ -20,38 +29,91 @@ public final class ChessGame implements Runnable {
 	public final Joystick blackJoystick = new JoystickImpl(this, Side.BLACK);
 	public final Joystick whiteJoystick = new JoystickImpl(this, Side.WHITE);
 	
-	private Visualizer blackVisualizer;
-	private ReadWriteLock blackVisualizerRWL = new ReentrantReadWriteLock();
-	private Visualizer whiteVisualizer;
-	private ReadWriteLock whiteVisualizerRWL = new ReentrantReadWriteLock();
+	public final static int DEFAULT_COMMAND_CAPACITY = 16;
+	/**
+	 * How many events may wait for a visualizer before they're dropped for a resync.
+	 */
+	public final static int VISUALIZER_CAPACITY = 64;
+	/**
+	 * How long the end of a game waits for each player to hear it, a visualizer that's slower is dropped.
+	 */
+	public final static long VISUALIZER_DRAIN_MILLIS = 2000;
+	
+	/**
+	 * Joy-stick commands, taken and applied in order by the game loop only.
+	 */
+	private final BlockingQueue<Command> commands;
+	/**
+	 * The position the game starts from, null for the standard startup.
+	 */
+	private final String fen;
+	private final AtomicLong droppedCommands = new AtomicLong();
+	private final AtomicLong discardedCommands = new AtomicLong();
+	
+	/**
+	 * Every visualizer gets its events through its own channel, publishing only queues them.
+	 */
+	private final Executor visualizerExecutor;
+	private VisualizerChannel blackVisualizer;
+	private VisualizerChannel whiteVisualizer;
+	private final List<VisualizerChannel> spectators = new ArrayList<>();
+	private final Lock visualizersLock = new ReentrantLock();
+	/**
+	 * The last delta published, null while the game is not running.
+	 */
+	private BoardDelta lastDelta;
+	private long sequence;
+	private final AtomicLong coalescedDeltas = new AtomicLong();
+	private final AtomicLong droppedNotifications = new AtomicLong();
 	
 	private Side turn;
 	private boolean gameover;
 	
 	private Chessboard chessboard;
-	private Map<Coordinate2D, Piece> chessboardSnapshot;
+	
+	/**
+	 * Every move played so far, 16 bits each, see {@link Move#compact(int)}.
+	 */
+	private short[] history = new short[128];
+	private int plies;
+	private int result;
+	private final ReadWriteLock historyRWL = new ReentrantReadWriteLock();
 	
 	private boolean running;
 	private final Lock runningInquireLock = new ReentrantLock();
 	
-	private final Lock chessWaitLock = new ReentrantLock();
-	private boolean waiting;
-	private final Condition chessWaitCondition = chessWaitLock.newCondition();
-	
-	
-	private PieceType ascendCache;
-	private final Lock ascendWaitLock = new ReentrantLock();
-	private final Condition ascendWaitCondition = ascendWaitLock.newCondition();
-	
+	public ChessGame() {
+		this(DEFAULT_COMMAND_CAPACITY);
+	}
 	
-	private boolean blackTranslocated;
-	private boolean whiteTranslocated;
+	/**
+	 * @param commandCapacity How many joy-stick commands may wait for the game loop,
+	 * 		commands beyond that are dropped and counted, see {@link #getDroppedCommands()}
+	 */
+	public ChessGame(int commandCapacity) {
+		this(commandCapacity, null);
+	}
 	
-	private boolean translocationCache;
-	private final Lock translocationInquireLock = new ReentrantLock();
-	private final Condition translocationInquireCondition = translocationInquireLock.newCondition();
+	/**
+	 * @param commandCapacity See {@link #ChessGame(int)}
+	 * @param fen The position to start from, e.g. a puzzle, null for the standard startup
+	 * @throws IllegalArgumentException If it's not a valid FEN
+	 */
+	public ChessGame(int commandCapacity, String fen) {
+		this(commandCapacity, fen, VisualizerChannel.DEFAULT_EXECUTOR);
+	}
 	
-	private Coordinate2D diStepPawn;
+	/**
+	 * @param commandCapacity See {@link #ChessGame(int)}
+	 * @param fen See {@link #ChessGame(int, String)}
+	 * @param visualizerExecutor Calls the visualizers, a task per visualizer at a time
+	 */
+	public ChessGame(int commandCapacity, String fen, Executor visualizerExecutor) {
+		if(fen != null) Fen.parse(fen);
+		commands = new ArrayBlockingQueue<>(commandCapacity);
+		this.fen = fen;
+		this.visualizerExecutor = visualizerExecutor;
+	}
 	
 	@Override
 	public void run() {
@@ -64,70 +126,217 @@ public final class ChessGame implements Runnable {
 			runningInquireLock.unlock();
 		}
 		
-		blackTranslocated = false;
-		whiteTranslocated = false;
-		
-		diStepPawn = null;
-		
-		turn = Side.WHITE;
 		gameover = false;
+		historyRWL.writeLock().lock();
+		plies = 0;
+		result = GameRecord.UNKNOWN;
+		historyRWL.writeLock().unlock();
 		
 		chessboard = new Chessboard();
 		
-		Chessboard.standardStartup(chessboard);
+		if(fen == null) {
+			Chessboard.standardStartup(chessboard);
+		} else Fen.load(chessboard, fen);
+		turn = chessboard.getTurn();
 		
-		updateChessboard();
+		updateChessboard(0);
 		
 		updateTurn();
 		
 		for (;;) {
 			
-			chessboardSnapshot = chessboard.getGrid();
 			if(gameover) {
-				updateGameover();
+				updateGameover(turn);
 				break;
 			}
-			chessWaitLock.lock();
+			Command command;
 			try {
-				waiting = true;
-				chessWaitCondition.await();
+				command = commands.take();
 			} catch (InterruptedException ex) {
-				ex.printStackTrace();
-			} finally {
-				waiting = false;
-				chessWaitLock.unlock();
+				// The host is shutting down, leave the game as it is
+				Thread.currentThread().interrupt();
+				break;
 			}
 			
-			updateChessboard();
+			if(command.kind == Command.QUIT) {
+				quit(command.side);
+			} else if(command.kind != Command.MOVE || command.side != turn) {
+				// A decision nobody asked for, or a move out of turn
+				discardedCommands.incrementAndGet();
+				continue;
+			} else if(!move(command.src, command.dest, command.side)) {
+				continue;
+			}
 			
 			if(gameover) {
-				updateGameover();
+				updateGameover(turn);
 				break;
 			}
 			
 			turn = invertSide(turn);
+			chessboard.passTurn();
+			
+			if(!chessboard.hasLegalMoves(turn)) {
+				gameover = true;
+				if(chessboard.isInCheck(turn)) {
+					updateCheckmate(turn);
+					turn = invertSide(turn);
+					setResult(turn);
+					updateGameover(turn);
+				} else {
+					updateStalemate(turn);
+					setResult(null);
+					updateGameover(null);
+				}
+				break;
+			}
+			if(chessboard.isInCheck(turn)) updateCheck(turn);
 			updateTurn();
 		}
 		
+		// The players hear the end of the game before it returns, if they keep up, spectators are not waited for
+		visualizersLock.lock();
+		lastDelta = null;
+		VisualizerChannel black = blackVisualizer, white = whiteVisualizer;
+		visualizersLock.unlock();
+		if(black != null && !black.awaitIdle(VISUALIZER_DRAIN_MILLIS)) black.close();
+		if(white != null && !white.awaitIdle(VISUALIZER_DRAIN_MILLIS)) white.close();
+		
 		runningInquireLock.lock();
 		running = false;
 		runningInquireLock.unlock();
 	}
 	
+	/**
+	 * Set while the game runs, the visualizer starts with a resync of the chess-board.
+	 */
 	public void setVisualizer(Visualizer visualizer, Side side) {
-		if(side == Side.BLACK) {
-			blackVisualizerRWL.writeLock().lock();
-			blackVisualizer = visualizer;
-			blackVisualizerRWL.writeLock().unlock();
-		} else if(side == Side.WHITE) {
-			whiteVisualizerRWL.writeLock().lock();
-			whiteVisualizer = visualizer;
-			whiteVisualizerRWL.writeLock().unlock();
-		} else throw new NullPointerException("Unknown side: " + side.name());
+		visualizersLock.lock();
+		try {
+			if(side == Side.BLACK) {
+				blackVisualizer = openChannel(visualizer);
+			} else if(side == Side.WHITE) {
+				whiteVisualizer = openChannel(visualizer);
+			} else throw new NullPointerException("Unknown side: " + side.name());
+		} finally {
+			visualizersLock.unlock();
+		}
+	}
+	
+	/**
+	 * Spectators hear about the chess-board, turns, checks and the end of the game,
+	 * like the players but never asked anything.
+	 */
+	public void addSpectator(Visualizer visualizer) {
+		visualizersLock.lock();
+		try {
+			spectators.add(openChannel(visualizer));
+		} finally {
+			visualizersLock.unlock();
+		}
+	}
+	
+	/**
+	 * Events already queued for it are still delivered.
+	 */
+	public void removeSpectator(Visualizer visualizer) {
+		visualizersLock.lock();
+		try {
+			for(int i = 0; i < spectators.size(); i++) {
+				if(spectators.get(i).visualizer == visualizer) {
+					spectators.remove(i);
+					break;
+				}
+			}
+		} finally {
+			visualizersLock.unlock();
+		}
+	}
+	
+	/**
+	 * Sends the visualizer, a player or a spectator, the whole chess-board again, see {@link DeltaVisualizer}.
+	 */
+	public void resync(Visualizer visualizer) {
+		visualizersLock.lock();
+		try {
+			if(blackVisualizer != null && blackVisualizer.visualizer == visualizer) blackVisualizer.resync();
+			if(whiteVisualizer != null && whiteVisualizer.visualizer == visualizer) whiteVisualizer.resync();
+			for (VisualizerChannel spectator : spectators) {
+				if(spectator.visualizer == visualizer) spectator.resync();
+			}
+		} finally {
+			visualizersLock.unlock();
+		}
 	}
 	
+	/**
+	 * @return Read-only grid of the chess-board, see {@link BoardSnapshot#getGrid()}
+	 */
 	public Map<Coordinate2D, Piece> getChessboardGrid(){
-		return chessboard.getGrid();
+		return chessboard.getSnapshot().getGrid();
+	}
+	
+	public BoardSnapshot getChessboardSnapshot(){
+		return chessboard.getSnapshot();
+	}
+	
+	/**
+	 * @return How many commands were refused because the queue was full.
+	 */
+	public long getDroppedCommands() {
+		return droppedCommands.get();
+	}
+	
+	/**
+	 * @return How many commands were taken from the queue but had nothing to apply to, e.g. moves out of turn.
+	 */
+	public long getDiscardedCommands() {
+		return discardedCommands.get();
+	}
+	
+	/**
+	 * @return How many commands are waiting for the game loop.
+	 */
+	public int getQueuedCommands() {
+		return commands.size();
+	}
+	
+	/**
+	 * @return How many chess-board deltas were merged into the one before, as a visualizer lagged.
+	 */
+	public long getCoalescedDeltas() {
+		return coalescedDeltas.get();
+	}
+	
+	/**
+	 * @return How many notifications were dropped, as a visualizer lagged too far.
+	 */
+	public long getDroppedNotifications() {
+		return droppedNotifications.get();
+	}
+	
+	/**
+	 * Pawns are copied along with their status, see {@link Chessboard#copy()}.
+	 * Call it on one's turn, e.g. in {@link Visualizer#onTurnChanges(Side)}, the game waits for the move so none is half done.
+	 * 
+	 * @return A copy of the chess-board to play on freely
+	 */
+	public Chessboard getChessboardCopy(){
+		return chessboard.copy();
+	}
+	
+	/**
+	 * Can be called any time, the game goes on.
+	 * 
+	 * @return The moves played so far and the result, if the game is over
+	 */
+	public GameRecord getRecord(){
+		historyRWL.readLock().lock();
+		try {
+			return new GameRecord(fen, history, plies, result);
+		} finally {
+			historyRWL.readLock().unlock();
+		}
 	}
 	
 	public boolean isRunning(){
@@ -138,47 +347,92 @@ public final class ChessGame implements Runnable {
 		return turn;
 	}
 	
+	/**
+	 * Must hold the visualizers lock.
+	 */
+	private VisualizerChannel openChannel(Visualizer visualizer) {
+		if(visualizer == null) return null;
+		VisualizerChannel channel = new VisualizerChannel(visualizer, visualizerExecutor, VISUALIZER_CAPACITY,
+				coalescedDeltas, droppedNotifications);
+		if(lastDelta != null) channel.publish(BoardDelta.resync(lastDelta.sequence, lastDelta.getSnapshot()));
+		return channel;
+	}
+	
 	// V
-	private void updateChessboard() {
-		blackVisualizerRWL.readLock().lock();
-		if(blackVisualizer != null) blackVisualizer.onChessboardUpdate(chessboard.getGrid());
-		blackVisualizerRWL.readLock().unlock();
-		whiteVisualizerRWL.readLock().lock();
-		if(whiteVisualizer != null) whiteVisualizer.onChessboardUpdate(chessboard.getGrid());
-		whiteVisualizerRWL.readLock().unlock();
+	/**
+	 * @param move The move just played, 0 to start with a resync
+	 */
+	private void updateChessboard(int move) {
+		BoardSnapshot snapshot = chessboard.getSnapshot();
+		visualizersLock.lock();
+		try {
+			lastDelta = move == 0 || lastDelta == null
+					? BoardDelta.resync(sequence, snapshot) : BoardDelta.of(lastDelta, snapshot, move);
+			sequence = lastDelta.sequence + 1;
+			if(blackVisualizer != null) blackVisualizer.publish(lastDelta);
+			if(whiteVisualizer != null) whiteVisualizer.publish(lastDelta);
+			for (VisualizerChannel spectator : spectators) spectator.publish(lastDelta);
+		} finally {
+			visualizersLock.unlock();
+		}
 	}
 	
 	// V
 	private void updateTurn() {
-		blackVisualizerRWL.readLock().lock();
-		if(blackVisualizer != null) blackVisualizer.onTurnChanges(turn);
-		blackVisualizerRWL.readLock().unlock();
-		whiteVisualizerRWL.readLock().lock();
-		if(whiteVisualizer != null) whiteVisualizer.onTurnChanges(turn);
-		whiteVisualizerRWL.readLock().unlock();
+		notifyAll(VisualizerChannel.TURN_CHANGES, turn);
+	}
+	
+	// V
+	private void updateGameover(Side winner) {
+		notifyAll(VisualizerChannel.GAMEOVER, winner);
+	}
+	
+	// V
+	private void updateCheck(Side side) {
+		notifyAll(VisualizerChannel.CHECK, side);
 	}
 	
 	// V
-	private void updateGameover() {
-		blackVisualizerRWL.readLock().lock();
-		if(blackVisualizer != null) blackVisualizer.onGameover(turn);
-		blackVisualizerRWL.readLock().unlock();
-		whiteVisualizerRWL.readLock().lock();
-		if(whiteVisualizer != null) whiteVisualizer.onGameover(turn);
-		whiteVisualizerRWL.readLock().unlock();
+	private void updateCheckmate(Side side) {
+		notifyAll(VisualizerChannel.CHECKMATE, side);
+	}
+	
+	// V
+	private void updateStalemate(Side side) {
+		notifyAll(VisualizerChannel.STALEMATE, side);
+	}
+	
+	private void notifyAll(int kind, Side side) {
+		visualizersLock.lock();
+		try {
+			if(blackVisualizer != null) blackVisualizer.notify(kind, side);
+			if(whiteVisualizer != null) whiteVisualizer.notify(kind, side);
+			for (VisualizerChannel spectator : spectators) spectator.notify(kind, side);
+		} finally {
+			visualizersLock.unlock();
+		}
+	}
+	
+	/**
+	 * @return The channel of the side's player, null if there's none
+	 */
+	private VisualizerChannel getVisualizer(Side side) {
+		visualizersLock.lock();
+		try {
+			if(side == Side.BLACK) {
+				return blackVisualizer;
+			} else if(side == Side.WHITE) {
+				return whiteVisualizer;
+			} else throw new NullPointerException("Unknown side: " + side.name());
+		} finally {
+			visualizersLock.unlock();
+		}
 	}
 	
 	// V
 	private void notifyInvalidMove(Coordinate2D coord, Coordinate2D dest, Piece piece, Side side) {
-		if(side == Side.BLACK) {
-			blackVisualizerRWL.readLock().lock();
-			blackVisualizer.onInvalidMove(coord, dest, piece);
-			blackVisualizerRWL.readLock().unlock();
-		} else if(side == Side.WHITE) {
-			whiteVisualizerRWL.readLock().lock();
-			whiteVisualizer.onInvalidMove(coord, dest, piece);
-			whiteVisualizerRWL.readLock().unlock();
-		} else throw new NullPointerException("Unknown side: " + side.name());
+		VisualizerChannel visualizer = getVisualizer(side);
+		if(visualizer != null) visualizer.notifyInvalidMove(coord, dest, piece);
 	}
 	
 	private static Side invertSide(Side side) {
@@ -190,102 +444,79 @@ public final class ChessGame implements Runnable {
 	}
 	
 	// J
-	private void move(Coordinate2D src, Coordinate2D dest, Side side) {
-		chessWaitLock.lock();
-		if(!waiting) {
-			chessWaitLock.unlock();
-			return;
+	/**
+	 * @return Whether the move is carried out
+	 */
+	private boolean move(Coordinate2D src, Coordinate2D dest, Side side) {
+		if(src == null || dest == null || !Chessboard.isOnBoard(src) || !Chessboard.isOnBoard(dest)) {
+			notifyInvalidMove(src, dest, null, side);
+			return false;
 		}
-		if(side != turn) {
-			chessWaitLock.unlock();
-			return;
-		}
-		Piece srcPiece = chessboardSnapshot.get(src);
-		Piece destPiece = chessboardSnapshot.get(dest);
+		// Straight from the squares, no grid to hash into
+		int from = Chessboard.square(src), to = Chessboard.square(dest);
+		Piece srcPiece = chessboard.getPiece(from);
+		Piece destPiece = chessboard.getPiece(to);
 		if(srcPiece == null) {
 			notifyInvalidMove(src, dest, srcPiece, side);
-			chessWaitLock.unlock();
-			return;
+			return false;
 		}
 		if(srcPiece.side != turn) {
 			notifyInvalidMove(src, dest, srcPiece, side);
-			chessWaitLock.unlock();
-			return;
+			return false;
 		}
 		
-		boolean isMoveValid = srcPiece.isMoveValid(chessboardSnapshot, src, dest);
+		boolean isMoveValid = srcPiece.isMoveValid(chessboard, from, to);
 		if(!isMoveValid) {
 			notifyInvalidMove(src, dest, srcPiece, side);
-			chessWaitLock.unlock();
-			return;
+			return false;
+		}
+		
+		int played = Move.of(from, to, 0);
+		boolean passant = srcPiece.getType() == PieceType.PAWN && dest.x != src.x && destPiece == null;
+		if(!chessboard.isLegal(Move.of(from, to, passant ? Move.EN_PASSANT : 0))) {
+			// It would leave the king attacked
+			notifyInvalidMove(src, dest, srcPiece, side);
+			return false;
 		}
 		
 		
 		// En-passant
+		int diStep = chessboard.getDiStep();
+		if(diStep >= 0 && chessboard.getPiece(diStep) instanceof PawnAccess) {
+			// Its chance is over with this move
+			((PawnAccess) chessboard.getPiece(diStep)).diMoveCancel();
+		}
 		if(srcPiece.getType() == PieceType.PAWN) {
 			((PawnAccess) srcPiece).move();
-			int dx = dest.x - src.x;
-			int dy = dest.y - src.y;
-			if(Math.abs(dx) == 1 && Math.abs(dy) == 1 && diStepPawn != null) { //En-passant
-				Coordinate2D passant = new Coordinate2D(src.x + dx, src.y);
-				Piece passantPiece = chessboardSnapshot.get(passant);
-				if(passantPiece != null) {
-					if(passantPiece.getType() == PieceType.PAWN) {
-						if(passantPiece.side != turn) chessboard.passant(passant);
-					} else {
-						((PawnAccess) chessboardSnapshot.get(diStepPawn)).diMoveCancel();
-					}
-				} else {
-					((PawnAccess) chessboardSnapshot.get(diStepPawn)).diMoveCancel();
-				}
-				diStepPawn = null;
-			} else { 
-				if(diStepPawn != null){
-					((PawnAccess) chessboardSnapshot.get(diStepPawn)).diMoveCancel();
-				}
-				if(Math.abs(dy) > 1) { //Double jump, record en-passant
-					((PawnAccess) srcPiece).diMoveBuf();
-					diStepPawn = dest;
-				} else {
-					diStepPawn = null;
-				}
+			if(passant) {
+				// Stepping aside onto an empty square is only valid behind a pawn that has just jumped
+				chessboard.passant((from & ~7) | (to & 7));
+			} else if(Math.abs(dest.y - src.y) > 1) { //Double jump, record en-passant
+				((PawnAccess) srcPiece).diMoveBuf();
 			}
-			
-		} else if(diStepPawn != null) {
-			((PawnAccess) chessboardSnapshot.get(diStepPawn)).diMoveCancel();
-			diStepPawn = null;
 		}
 		
 		//Translocation
-		boolean isTranslocated;
-		if(side == Side.BLACK) {
-			isTranslocated = blackTranslocated;
-		} else if(side == Side.WHITE) {
-			isTranslocated = whiteTranslocated;
-		} else throw new NullPointerException("Unknown side: " + side.name());
-		if(!isTranslocated) {
+		if(!chessboard.isTranslocated(side)) {
 			if(srcPiece.getType() == PieceType.ROOK) {
 				int dx = dest.x - src.x;
 				int dy = dest.y - src.y;
-				Coordinate2D next;
+				int next;
 				if(Math.abs(dx) > 1) {
-					next = new Coordinate2D(dest.x + (dx>0?1:-1), dest.y);
+					next = to + (dx>0?1:-1);
 				} else if (Math.abs(dy) > 1){
-					next = new Coordinate2D(dest.x, dest.y + (dy>0?1:-1));
+					next = to + (dy>0?8:-8);
 				} else {
-					next = null;
+					next = -1;
 				}
-				if(next != null) {
-					Piece nextPiece = chessboardSnapshot.get(next);
+				if(next >= 0 && next < 64 && ((next & 7) == (to & 7) || (next >>> 3) == (to >>> 3))) {
+					Piece nextPiece = chessboard.getPiece(next);
 					if(nextPiece != null) {
 						if(nextPiece.getType() == PieceType.KING && nextPiece.side == side) {
-							if(inquireTranslocation(next)) {
-								chessboard.move(next, new Coordinate2D(dest.x*2-next.x, dest.y*2-next.y));
-								if(side == Side.BLACK) {
-									blackTranslocated = true;
-								} else if(side == Side.WHITE) {
-									whiteTranslocated = true;
-								} else throw new NullPointerException("Unknown side: " + side.name());
+							if(chessboard.isLegal(Move.of(from, to, Move.TRANSLOCATION)) && inquireTranslocation(Coordinate2D.of(next & 7, next >>> 3))) {
+								chessboard.move(next, to*2-next);
+								chessboard.translocated(side);
+								played |= Move.TRANSLOCATION;
 							}
 						}
 					}
@@ -298,151 +529,102 @@ public final class ChessGame implements Runnable {
 			if(side == Side.WHITE) {
 				if(dest.y == 7) {
 					PieceType type = acquireChooseAscend(src);
-					chessboard.ascend(src, PieceFactory.createPiece(side, type));
+					played = Move.ascend(from, to, type, 0);
+					chessboard.ascend(from, PieceFactory.createPiece(side, type));
 				}
 			} else if(side == Side.BLACK) {
 				if(dest.y == 0) {
 					PieceType type = acquireChooseAscend(src);
-					chessboard.ascend(src, PieceFactory.createPiece(side, type));
+					played = Move.ascend(from, to, type, 0);
+					chessboard.ascend(from, PieceFactory.createPiece(side, type));
 				}
 			} else throw new NullPointerException("Unknown side: " + side.name());
 		}
 		
 		//Normal move
-		chessboard.move(src, dest);
-		if(destPiece != null) {
-			if(destPiece.getType() == PieceType.KING) {
-				gameover = true;
-			}
-		}
-		chessWaitCondition.signalAll();
-		chessWaitLock.unlock();
-		
-		/*
-		chessboardSnapshotRWL.readLock().lock();
-		boolean isMoveValid = srcPiece.isMoveValid(chessboardSnapshot, src, dest);
-		chessboardSnapshotRWL.readLock().unlock();
-		if(!isMoveValid) {
-			notifyInvalidMove(src, dest, srcPiece, side);
-			return;
-		}*/
-		
-		/*chessWaitCondition.signalAll();
-		chessWaitLock.unlock();*/
+		chessboard.move(from, to);
+		record(played);
+		updateChessboard(played);
+		return true;
+	}
+	
+	private void record(int move) {
+		historyRWL.writeLock().lock();
+		if(plies == history.length) history = Arrays.copyOf(history, plies * 2);
+		history[plies++] = Move.compact(move);
+		historyRWL.writeLock().unlock();
+	}
+	
+	/**
+	 * @param winner The side that won, null if nobody wins
+	 */
+	private void setResult(Side winner) {
+		historyRWL.writeLock().lock();
+		result = GameRecord.result(winner);
+		historyRWL.writeLock().unlock();
 	}
 	
 	private boolean inquireTranslocation(Coordinate2D coord) {
-		boolean translocate;
-		if(turn == Side.BLACK) {
-			blackVisualizerRWL.readLock().lock();
-			if(blackVisualizer == null) {
-				blackVisualizerRWL.readLock().unlock();
-				return false;
-			} else {
-				blackVisualizer.onCanTranslocation(coord);
-				blackVisualizerRWL.readLock().unlock();
-				translocationInquireLock.lock();
-				try {
-					translocationInquireCondition.await();
-				} catch (InterruptedException ex) {
-					ex.printStackTrace();
-				}
-				translocate = translocationCache;
-				translocationInquireLock.unlock();
-			}
-		} else if (turn == Side.WHITE) {
-			whiteVisualizerRWL.readLock().lock();
-			if(whiteVisualizer == null) {
-				whiteVisualizerRWL.readLock().unlock();
-				return false;
-			} else {
-				whiteVisualizer.onCanTranslocation(coord);
-				whiteVisualizerRWL.readLock().unlock();
-				translocationInquireLock.lock();
-				try {
-					translocationInquireCondition.await();
-				} catch (InterruptedException ex) {
-					ex.printStackTrace();
-				}
-				translocate = translocationCache;
-				translocationInquireLock.unlock();
-			}
-		} else throw new NullPointerException("Unknown side: " + turn.name());
-		return translocate;
+		VisualizerChannel visualizer = getVisualizer(turn);
+		if(visualizer == null) return false;
+		visualizer.notify(VisualizerChannel.CAN_TRANSLOCATION, coord);
+		Command decision = awaitDecision(Command.TRANSLOCATE);
+		return decision != null && decision.translocate;
 	}
 	
-	private void translocate(boolean translocate, Side side) {
-		if(side != turn) return;
-		translocationInquireLock.lock();
-		translocationCache = translocate;
-		translocationInquireCondition.signalAll();
-		translocationInquireLock.unlock();
+	/**
+	 * Takes commands until the side to move answers an inquiry of the given kind.
+	 * Anything else in between is discarded, except quitting which still ends the game.
+	 * 
+	 * @return The answer, or null if there won't be one
+	 */
+	private Command awaitDecision(int kind) {
+		for (;;) {
+			Command command;
+			try {
+				command = commands.take();
+			} catch (InterruptedException ex) {
+				// Let the game loop see it
+				Thread.currentThread().interrupt();
+				return null;
+			}
+			if(command.kind == Command.QUIT) {
+				quit(command.side);
+				return null;
+			}
+			if(command.kind == kind && command.side == turn) return command;
+			discardedCommands.incrementAndGet();
+		}
 	}
 	
 	// J
 	private void quit(Side side) {
-		chessWaitLock.lock();
 		gameover = true;
 		turn = invertSide(side);
-		chessWaitCondition.signalAll();
-		chessWaitLock.unlock();
+		setResult(turn);
 	}
 	
+	/**
+	 * @return The chosen piece type, queen if nobody chooses
+	 */
 	private PieceType acquireChooseAscend(Coordinate2D coord) {
-		PieceType pieceType;
-		if(turn == Side.BLACK) {
-			blackVisualizerRWL.readLock().lock();
-			if(blackVisualizer == null) {
-				blackVisualizerRWL.readLock().unlock();
-				return null;
-			} else {
-				blackVisualizer.onAscend(coord);
-				blackVisualizerRWL.readLock().unlock();
-				ascendWaitLock.lock();
-				try {
-					ascendWaitCondition.await();
-				} catch (InterruptedException ex) {
-					ex.printStackTrace();
-				}
-				pieceType = ascendCache;
-				ascendWaitLock.unlock();
-			}
-		} else if (turn == Side.WHITE) {
-			whiteVisualizerRWL.readLock().lock();
-			if(whiteVisualizer == null) {
-				whiteVisualizerRWL.readLock().unlock();
-				return null;
-			} else {
-				whiteVisualizer.onAscend(coord);
-				whiteVisualizerRWL.readLock().unlock();
-				ascendWaitLock.lock();
-				try {
-					ascendWaitCondition.await();
-				} catch (InterruptedException ex) {
-					ex.printStackTrace();
-				}
-				pieceType = ascendCache;
-				ascendWaitLock.unlock();
-			}
-		} else throw new NullPointerException("Unknown side: " + turn.name());
-		return pieceType;
+		VisualizerChannel visualizer = getVisualizer(turn);
+		if(visualizer == null) return PieceType.QUEEN;
+		visualizer.notify(VisualizerChannel.ASCEND, coord);
+		Command decision = awaitDecision(Command.ASCEND);
+		// Nothing a pawn can become, like a king, counts as no answer
+		if(decision == null || !Move.isAscendType(decision.pieceType)) return PieceType.QUEEN;
+		return decision.pieceType;
 	}
 	
-	private void chooseAscend(PieceType type, Side side) {
-		if(side != turn) return;
-		ascendWaitLock.lock();
-		ascendCache = type;
-		ascendWaitCondition.signalAll();
-		ascendWaitLock.unlock();
+	private void offer(Command command) {
+		if(!commands.offer(command)) droppedCommands.incrementAndGet();
 	}
 	
 	// V, J
 	private void message(String message, Side side) {
-		if(side == Side.BLACK) {
-			whiteVisualizer.onMessage(message);
-		} else if(side == Side.WHITE) {
-			blackVisualizer.onMessage(message);
-		} else throw new NullPointerException("Unknown side: " + side.name());
+		VisualizerChannel visualizer = getVisualizer(invertSide(side));
+		if(visualizer != null) visualizer.notifyMessage(message);
 	}
 	
 	private final static class JoystickImpl implements Joystick {
@@ -455,39 +637,57 @@ public final class ChessGame implements Runnable {
 			this.chessGame = chessGame;
 			this.side = side;
 		}
-
+		
 		@Override
 		public void move(Coordinate2D src, Coordinate2D dest) {
-			new Thread(new Runnable() {
-				
-				@Override
-				public void run() {
-					chessGame.move(src, dest, side);
-				}
-			}).start();
-			
+			chessGame.offer(new Command(Command.MOVE, side, src, dest, null, false));
 		}
-
+		
 		@Override
 		public void quit() {
-			chessGame.quit(side);
+			chessGame.offer(new Command(Command.QUIT, side, null, null, null, false));
 		}
-
+		
 		@Override
 		public void message(String message) {
 			chessGame.message(message, side);
 		}
-
+		
 		@Override
 		public void ascendTo(PieceType pieceType) {
-			chessGame.chooseAscend(pieceType, side);
+			chessGame.offer(new Command(Command.ASCEND, side, null, null, pieceType, false));
 		}
-
+		
 		@Override
 		public void decideTranslocation(boolean translocate) {
-			chessGame.translocate(translocate, side);
+			chessGame.offer(new Command(Command.TRANSLOCATE, side, null, null, null, translocate));
 		}
+	
+	}
+	
+	private final static class Command {
+		
+		final static int MOVE = 0;
+		final static int QUIT = 1;
+		final static int ASCEND = 2;
+		final static int TRANSLOCATE = 3;
 		
+		final int kind;
+		final Side side;
+		final Coordinate2D src;
+		final Coordinate2D dest;
+		final PieceType pieceType;
+		final boolean translocate;
+		
+		Command(int kind, Side side, Coordinate2D src, Coordinate2D dest, PieceType pieceType, boolean translocate) {
+			this.kind = kind;
+			this.side = side;
+			this.src = src;
+			this.dest = dest;
+			this.pieceType = pieceType;
+			this.translocate = translocate;
+		}
+	
 	}
 
 }
@@ -1,11 +1,15 @@
 package alan.chessgame_f;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import alan.chessgame_f.chess.Attacks;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.PawnAccess;
 import alan.chessgame_f.chess.Piece;
 import alan.chessgame_f.chess.PieceFactory;
 import alan.chessgame_f.chess.PieceType;
@@ -13,9 +17,32 @@ import alan.chessgame_f.util.Coordinate2D;
 
 public final class Chessboard {
 	
-	private final Map<Coordinate2D, Piece> grid = new HashMap<>();
+	private final static int PIECE_TYPES = PieceType.values().length;
+	
+	/*
+	 * Square index is y*8+x, so bit 0 is A1 and bit 63 is H8.
+	 * bitboards[side.ordinal() * PIECE_TYPES + type.ordinal()] holds one mask per side and type,
+	 * squares[] keeps the piece instance standing on the square (pawns carry their own status).
+	 */
+	private final long[] bitboards = new long[PIECE_TYPES * 2];
+	private final long[] occupancies = new long[2];
+	private final Piece[] squares = new Piece[64];
 	private final ReadWriteLock gridRWL = new ReentrantReadWriteLock();
 	
+	private Side turn = Side.WHITE;
+	private final boolean[] translocated = new boolean[2];
+	private int diStep = -1;
+	private long key;
+	
+	/*
+	 * Pieces taken off by makeMove, and pawns that ascended, so unmakeMove can put the very same instances back.
+	 */
+	private Piece[] undoPieces = new Piece[64];
+	private int undoCount;
+	
+	private long version;
+	private volatile BoardSnapshot snapshot;
+	
 	/**
 	 * The grid is cloned, don't worry :P
 	 * @return The cloned grid
@@ -23,17 +50,419 @@ public final class Chessboard {
 	public Map<Coordinate2D, Piece> getGrid(){
 		Map<Coordinate2D, Piece> grid = new HashMap<>();
 		gridRWL.readLock().lock();
-		for (Entry<Coordinate2D, Piece> entry : Chessboard.this.grid.entrySet()) {
-			grid.put(entry.getKey(), entry.getValue());
+		for (int square = 0; square < 64; square++) {
+			Piece piece = squares[square];
+			if(piece != null) grid.put(Coordinate2D.of(square), piece);
 		}
 		gridRWL.readLock().unlock();
 		return grid;
 	}
 	
+	/**
+	 * The snapshot is only built once per version and is shared by every reader,
+	 * mutations just drop the published one.
+	 * 
+	 * @return The snapshot of current version
+	 */
+	public BoardSnapshot getSnapshot(){
+		BoardSnapshot snapshot = this.snapshot;
+		if(snapshot != null) return snapshot;
+		gridRWL.readLock().lock();
+		try {
+			snapshot = this.snapshot;
+			if(snapshot == null) {
+				snapshot = new BoardSnapshot(version, key, squares);
+				this.snapshot = snapshot;
+			}
+		} finally {
+			gridRWL.readLock().unlock();
+		}
+		return snapshot;
+	}
+	
+	public long getVersion() {
+		return version;
+	}
+	
+	/**
+	 * Zobrist key of the position, see {@link Zobrist}: the pieces, the side to move,
+	 * who has translocated and which pawn can be taken en-passant. <br>
+	 * Every change updates it on the way, so reading it costs nothing.
+	 */
+	public long getKey() {
+		return key;
+	}
+	
+	public Side getTurn() {
+		return turn;
+	}
+	
+	/**
+	 * Hands the move over to the other side.
+	 */
+	public void passTurn() {
+		gridRWL.writeLock().lock();
+		setTurn(turn == Side.WHITE ? Side.BLACK : Side.WHITE);
+		modified();
+		gridRWL.writeLock().unlock();
+	}
+	
+	public boolean isTranslocated(Side side) {
+		return translocated[side.ordinal()];
+	}
+	
+	/**
+	 * Records that the side has translocated, it can't do it again.
+	 */
+	public void translocated(Side side) {
+		gridRWL.writeLock().lock();
+		setTranslocated(side);
+		modified();
+		gridRWL.writeLock().unlock();
+	}
+	
+	/**
+	 * {@link #move(Coordinate2D, Coordinate2D)} keeps this: a pawn jumping two squares sets it,
+	 * any other move clears it.
+	 * 
+	 * @return The square of the pawn that can be taken en-passant, or -1
+	 */
+	public int getDiStep() {
+		return diStep;
+	}
+	
+	/**
+	 * Same layout as {@link #toArray(Map)}, but without building a grid first.
+	 */
+	public Piece[][] toArray(){
+		Piece[][] pieces = new Piece[8][8];
+		gridRWL.readLock().lock();
+		for (int square = 0; square < 64; square++) {
+			pieces[square & 7][square >>> 3] = squares[square];
+		}
+		gridRWL.readLock().unlock();
+		return pieces;
+	}
+	
+	public Piece getPiece(int square) {
+		return squares[square];
+	}
+	
+	public Piece getPiece(Coordinate2D coord) {
+		if(!isOnBoard(coord)) return null;
+		return squares[square(coord)];
+	}
+	
+	public long getBitboard(Side side, PieceType type) {
+		return bitboards[bitboardIndex(side, type)];
+	}
+	
+	public long getOccupancy(Side side) {
+		return occupancies[side.ordinal()];
+	}
+	
+	public long getOccupancy() {
+		return occupancies[0] | occupancies[1];
+	}
+	
+	/**
+	 * Generates the moves of every piece of one side, see {@link Piece#generateMoves(Chessboard, int, int[], int)}.
+	 *
+	 * @param side The side to move
+	 * @param moves The buffer, {@link alan.chessgame_f.chess.Move#MAX_MOVES} long is enough.
+	 * @return How many moves are written
+	 */
+	public int generateMoves(Side side, int[] moves) {
+		int count = 0;
+		for(long pieces = occupancies[side.ordinal()]; pieces != 0; pieces &= pieces - 1) {
+			int square = Long.numberOfTrailingZeros(pieces);
+			count += squares[square].generateMoves(this, square, moves, count);
+		}
+		return count;
+	}
+	
+	/**
+	 * Same as {@link #generateMoves(Side, int[])}, without the moves that leave one's own king attacked.
+	 */
+	public int generateLegalMoves(Side side, int[] moves) {
+		int count = generateMoves(side, moves);
+		int legal = 0;
+		for(int i=0;i<count;i++) {
+			if(isLegal(moves[i])) moves[legal++] = moves[i];
+		}
+		return legal;
+	}
+	
+	/**
+	 * Stops at the first legal move. The destinations are read from {@link Piece#getValidMoves(Chessboard, int)},
+	 * so nothing is buffered or allocated.
+	 */
+	public boolean hasLegalMoves(Side side) {
+		for(long pieces = occupancies[side.ordinal()]; pieces != 0; pieces &= pieces - 1) {
+			int square = Long.numberOfTrailingZeros(pieces);
+			for(long dests = squares[square].getValidMoves(this, square); dests != 0; dests &= dests - 1) {
+				if(isLegal(expandMove(Move.of(square, Long.numberOfTrailingZeros(dests), 0)))) return true;
+			}
+		}
+		return false;
+	}
+	
+	public boolean isInCheck(Side side) {
+		long king = bitboards[bitboardIndex(side, PieceType.KING)];
+		if(king == 0) return false;
+		return isAttacked(Long.numberOfTrailingZeros(king), side == Side.WHITE ? Side.BLACK : Side.WHITE);
+	}
+	
+	/**
+	 * @param square The square that may be attacked
+	 * @param by The attacking side
+	 */
+	public boolean isAttacked(int square, Side by) {
+		return isAttacked(square, by, getOccupancy(), -1L);
+	}
+	
+	/**
+	 * Whether the move leaves one's own king safe, worked out on the bitboards without playing it. <br>
+	 * A translocation must also start out of check, and the king can't pass over an attacked square.
+	 * The move itself is not checked, see {@link Piece#isMoveValid}.
+	 * 
+	 * @param move The packed move, see {@link Move}
+	 */
+	public boolean isLegal(int move) {
+		int from = Move.from(move), to = Move.to(move);
+		Piece piece = squares[from];
+		Side side = piece.side;
+		Side opponent = side == Side.WHITE ? Side.BLACK : Side.WHITE;
+		long king = bitboards[bitboardIndex(side, PieceType.KING)];
+		
+		long occupancy = getOccupancy() & ~(1L << from) | 1L << to;
+		long captured = 1L << to;
+		int kingSquare = piece.getType() == PieceType.KING ? to : Long.numberOfTrailingZeros(king);
+		if(Move.is(move, Move.EN_PASSANT)) {
+			long passant = 1L << ((from & ~7) | (to & 7));
+			occupancy &= ~passant;
+			captured |= passant;
+		}
+		if(Move.is(move, Move.TRANSLOCATION)) {
+			if(isInCheck(side) || isAttacked(to, opponent)) return false;
+			int step = step(from, to);
+			occupancy = occupancy & ~(1L << (to + step)) | 1L << (to - step);
+			kingSquare = to - step;
+		}
+		if(king == 0) return true;
+		return !isAttacked(kingSquare, opponent, occupancy, ~captured);
+	}
+	
+	/**
+	 * @param occupancy The pieces that block the sliding pieces
+	 * @param mask The attackers that still stand, taken pieces are cleared from it
+	 */
+	private boolean isAttacked(int square, Side by, long occupancy, long mask) {
+		int base = by.ordinal() * PIECE_TYPES;
+		if((Attacks.knight(square) & bitboards[base + PieceType.KNIGHT.ordinal()] & mask) != 0) return true;
+		if((Attacks.king(square) & bitboards[base + PieceType.KING.ordinal()] & mask) != 0) return true;
+		// A pawn attacks the square if a pawn of the other side on the square would take it
+		Side other = by == Side.WHITE ? Side.BLACK : Side.WHITE;
+		if((Attacks.pawn(other, square) & bitboards[base + PieceType.PAWN.ordinal()] & mask) != 0) return true;
+		long queens = bitboards[base + PieceType.QUEEN.ordinal()];
+		long rooks = (bitboards[base + PieceType.ROOK.ordinal()] | queens) & mask;
+		if(rooks != 0 && (Attacks.rook(square, occupancy) & rooks) != 0) return true;
+		long bishops = (bitboards[base + PieceType.BISHOP.ordinal()] | queens) & mask;
+		return bishops != 0 && (Attacks.bishop(square, occupancy) & bishops) != 0;
+	}
+	
+	/**
+	 * Plays a packed move the way {@link ChessGame} does, but without asking anyone: 
+	 * the ascend type and the translocation decision are taken from the move. <br>
+	 * The move is not checked, and it can't be taken back, see {@link #makeMove(int)} for that.
+	 * 
+	 * @param move The packed move, see {@link Move}
+	 */
+	public void play(int move) {
+		gridRWL.writeLock().lock();
+		make(move, false);
+		modified();
+		gridRWL.writeLock().unlock();
+	}
+	
+	/**
+	 * Same as {@link #play(int)}, but the move can be taken back with {@link #unmakeMove(long)},
+	 * so a search can walk the tree on one chess-board instead of copying it on every move. <br>
+	 * Moves must be taken back in the reverse order they are made.
+	 * 
+	 * <pre>
+	 * bits  0-18 : the move
+	 * bits 20-26 : en-passant square before the move, plus one
+	 * bit     27 : the moving pawn had moved before
+	 * bit     28 : the pawn of the en-passant square could still be taken
+	 * bit     29 : the side had translocated before
+	 * bit     30 : it was black's turn before
+	 * </pre>
+	 * 
+	 * @param move The packed move, see {@link Move}
+	 * @return The undo record
+	 */
+	public long makeMove(int move) {
+		gridRWL.writeLock().lock();
+		long undo = make(move, true);
+		modified();
+		gridRWL.writeLock().unlock();
+		return undo;
+	}
+	
+	/**
+	 * Puts the position back the way it was before the move, captured pieces, pawn status,
+	 * translocation, turn and key included.
+	 * 
+	 * @param undo The record returned by {@link #makeMove(int)}
+	 */
+	public void unmakeMove(long undo) {
+		int move = (int) (undo & 0x7FFFF);
+		int from = Move.from(move), to = Move.to(move);
+		gridRWL.writeLock().lock();
+		if(Move.is(move, Move.TRANSLOCATION)) {
+			int step = step(from, to);
+			put(to + step, remove(to - step));
+		}
+		Piece piece = remove(to);
+		Side side = piece.side;
+		if(Move.is(move, Move.ASCEND)) piece = pop();
+		Piece captured = pop();
+		
+		put(from, piece);
+		if(Move.is(move, Move.EN_PASSANT)) {
+			put((from & ~7) | (to & 7), captured);
+		} else put(to, captured);
+		
+		if(piece instanceof PawnAccess) {
+			PawnAccess pawn = (PawnAccess) piece;
+			if(Move.is(move, Move.DOUBLE_STEP)) pawn.diMoveCancel();
+			if((undo & 1L << 27) == 0) pawn.unmove();
+		}
+		int diStep = (int) ((undo >>> 20) & 0x7F) - 1;
+		setDiStep(diStep);
+		if((undo & 1L << 28) != 0) ((PawnAccess) squares[diStep]).diMoveBuf();
+		if((undo & 1L << 29) == 0) clearTranslocated(side);
+		setTurn((undo & 1L << 30) != 0 ? Side.BLACK : Side.WHITE);
+		modified();
+		gridRWL.writeLock().unlock();
+	}
+	
+	/**
+	 * Reads the flags left out by {@link Move#compact(int)} from the position, the move must be the next one to play.
+	 * 
+	 * @param compact The move in 16 bits
+	 * @return The packed move, see {@link Move}
+	 */
+	public int expandMove(int compact) {
+		int move = compact & 0xFFFF;
+		int from = Move.from(move), to = Move.to(move);
+		Piece piece = squares[from];
+		if(piece == null) throw new IllegalArgumentException("No piece to move: " + Move.toString(move));
+		if(squares[to] != null) {
+			move |= Move.CAPTURE;
+		} else if(piece instanceof PawnAccess) {
+			if(((from ^ to) & 7) != 0) move |= Move.CAPTURE | Move.EN_PASSANT;
+			else if(Math.abs((to >>> 3) - (from >>> 3)) == 2) move |= Move.DOUBLE_STEP;
+		}
+		return move;
+	}
+	
+	/**
+	 * Must be called with write lock held.
+	 * 
+	 * @param keep Whether to keep the taken pieces for {@link #unmakeMove(long)}
+	 * @return The undo record, see {@link #makeMove(int)}
+	 */
+	private long make(int move, boolean keep) {
+		int from = Move.from(move), to = Move.to(move);
+		Piece piece = remove(from);
+		Side side = piece.side;
+		long undo = (move & 0x7FFFF) | (long) (diStep + 1) << 20;
+		if(translocated[side.ordinal()]) undo |= 1L << 29;
+		if(turn == Side.BLACK) undo |= 1L << 30;
+		
+		// A pawn can only be taken en-passant right after its double jump
+		if(diStep >= 0 && squares[diStep] instanceof PawnAccess) {
+			PawnAccess diStepPawn = (PawnAccess) squares[diStep];
+			if(diStepPawn.isDiMove()) undo |= 1L << 28;
+			diStepPawn.diMoveCancel();
+		}
+		setDiStep(Move.is(move, Move.DOUBLE_STEP) ? to : -1);
+		
+		Piece captured = null;
+		Piece original = piece;
+		if(piece instanceof PawnAccess) {
+			PawnAccess pawn = (PawnAccess) piece;
+			if(pawn.isMoved()) undo |= 1L << 27;
+			pawn.move();
+			if(Move.is(move, Move.DOUBLE_STEP)) pawn.diMoveBuf();
+			if(Move.is(move, Move.EN_PASSANT)) captured = remove((from & ~7) | (to & 7));
+			if(Move.is(move, Move.ASCEND)) piece = PieceFactory.createPiece(side, Move.getAscendType(move));
+		}
+		
+		if(squares[to] != null) captured = remove(to);
+		put(to, piece);
+		
+		if(Move.is(move, Move.TRANSLOCATION)) {
+			// The king stands next to the rook's destination, and jumps over the rook
+			int step = step(from, to);
+			put(to - step, remove(to + step));
+			setTranslocated(side);
+		}
+		setTurn(side == Side.WHITE ? Side.BLACK : Side.WHITE);
+		
+		if(keep) {
+			if(undoCount + 2 > undoPieces.length) undoPieces = Arrays.copyOf(undoPieces, undoPieces.length * 2);
+			undoPieces[undoCount++] = captured;
+			if(piece != original) undoPieces[undoCount++] = original;
+		}
+		return undo;
+	}
+	
+	private Piece pop() {
+		Piece piece = undoPieces[--undoCount];
+		undoPieces[undoCount] = null;
+		return piece;
+	}
+	
+	/**
+	 * Pawns are copied along with their status, so the copy can be played on freely.
+	 * 
+	 * @return A copy of this chess-board
+	 */
+	public Chessboard copy() {
+		Chessboard chessboard = new Chessboard();
+		gridRWL.readLock().lock();
+		System.arraycopy(bitboards, 0, chessboard.bitboards, 0, bitboards.length);
+		System.arraycopy(occupancies, 0, chessboard.occupancies, 0, occupancies.length);
+		System.arraycopy(translocated, 0, chessboard.translocated, 0, translocated.length);
+		chessboard.turn = turn;
+		chessboard.diStep = diStep;
+		chessboard.key = key;
+		for(int square = 0; square < 64; square++) {
+			Piece piece = squares[square];
+			if(piece != null) chessboard.squares[square] = PieceFactory.copyPiece(piece);
+		}
+		gridRWL.readLock().unlock();
+		return chessboard;
+	}
+	
 	public void move(Coordinate2D src, Coordinate2D dest) {
+		move(checkedSquare(src), checkedSquare(dest));
+	}
+	
+	/**
+	 * @param from The square, as y*8+x
+	 * @param to The square, as y*8+x
+	 */
+	public void move(int from, int to) {
 		gridRWL.writeLock().lock();
-		Piece piece = grid.remove(src);
-		grid.put(dest, piece);
+		Piece piece = remove(from);
+		remove(to);
+		put(to, piece);
+		setDiStep(piece instanceof PawnAccess && Math.abs((to >>> 3) - (from >>> 3)) == 2 ? to : -1);
+		modified();
 		gridRWL.writeLock().unlock();
 	}
 	
@@ -41,31 +470,175 @@ public final class Chessboard {
 	 * Pronounce as "switch"
 	 */
 	public void switr(Coordinate2D coordA, Coordinate2D coordB){
+		int a = checkedSquare(coordA), b = checkedSquare(coordB);
 		gridRWL.writeLock().lock();
-		Piece pieceA = grid.get(coordA);
-		Piece pieceB = grid.get(coordA);
-		grid.put(coordA, pieceB);
-		grid.put(coordB, pieceA);
+		Piece pieceA = remove(a);
+		Piece pieceB = remove(b);
+		put(a, pieceB);
+		put(b, pieceA);
+		modified();
 		gridRWL.writeLock().unlock();
 	}
 	
 	public void ascend(Coordinate2D coord, Piece piece) {
+		ascend(checkedSquare(coord), piece);
+	}
+	
+	public void ascend(int square, Piece piece) {
 		gridRWL.writeLock().lock();
-		grid.put(coord, piece);
+		remove(square);
+		put(square, piece);
+		modified();
 		gridRWL.writeLock().unlock();
 	}
 	
 	public void passant(Coordinate2D coord) {
+		passant(checkedSquare(coord));
+	}
+	
+	public void passant(int square) {
+		gridRWL.writeLock().lock();
+		remove(square);
+		if(square == diStep) setDiStep(-1);
+		modified();
+		gridRWL.writeLock().unlock();
+	}
+	
+	/**
+	 * Replaces the whole position, see {@link Fen}. The pawns must carry their status already.
+	 * 
+	 * @param squares The pieces, indexed by square
+	 * @param translocated Whether each side has translocated, indexed by {@link Side#ordinal()}
+	 * @param diStep The square of the pawn that can be taken en-passant, or -1
+	 */
+	public void load(Piece[] squares, Side turn, boolean[] translocated, int diStep) {
 		gridRWL.writeLock().lock();
-		grid.remove(coord);
+		Arrays.fill(bitboards, 0);
+		Arrays.fill(occupancies, 0);
+		Arrays.fill(this.squares, null);
+		Arrays.fill(undoPieces, 0, undoCount, null);
+		undoCount = 0;
+		key = 0;
+		this.turn = Side.WHITE;
+		this.diStep = -1;
+		for (Side side : Side.values()) {
+			this.translocated[side.ordinal()] = false;
+			if(translocated[side.ordinal()]) setTranslocated(side);
+		}
+		for(int square = 0; square < 64; square++) {
+			put(square, squares[square]);
+		}
+		setTurn(turn);
+		setDiStep(diStep);
+		modified();
 		gridRWL.writeLock().unlock();
 	}
 	
+	/**
+	 * Must be called with write lock held.
+	 */
+	private void modified() {
+		version++;
+		snapshot = null;
+	}
+	
+	private Piece remove(int square) {
+		Piece piece = squares[square];
+		if(piece != null) {
+			long mask = ~(1L << square);
+			PieceType type = piece.getType();
+			bitboards[bitboardIndex(piece.side, type)] &= mask;
+			occupancies[piece.side.ordinal()] &= mask;
+			squares[square] = null;
+			key ^= Zobrist.piece(piece.side, type, square);
+		}
+		return piece;
+	}
+	
+	private void put(int square, Piece piece) {
+		if(piece == null) return;
+		long bit = 1L << square;
+		PieceType type = piece.getType();
+		bitboards[bitboardIndex(piece.side, type)] |= bit;
+		occupancies[piece.side.ordinal()] |= bit;
+		squares[square] = piece;
+		key ^= Zobrist.piece(piece.side, type, square);
+	}
+	
+	private void setTurn(Side side) {
+		if(side == turn) return;
+		turn = side;
+		key ^= Zobrist.blackToMove();
+	}
+	
+	private void setTranslocated(Side side) {
+		if(translocated[side.ordinal()]) return;
+		translocated[side.ordinal()] = true;
+		key ^= Zobrist.translocated(side);
+	}
+	
+	private void clearTranslocated(Side side) {
+		if(!translocated[side.ordinal()]) return;
+		translocated[side.ordinal()] = false;
+		key ^= Zobrist.translocated(side);
+	}
+	
+	private void setDiStep(int square) {
+		if(diStep >= 0) key ^= Zobrist.diStep(diStep);
+		diStep = square;
+		if(diStep >= 0) key ^= Zobrist.diStep(diStep);
+	}
+	
+	/**
+	 * Hashes the whole position again, to check the incremental key with.
+	 */
+	public long computeKey() {
+		long key = 0;
+		for(int square = 0; square < 64; square++) {
+			Piece piece = squares[square];
+			if(piece != null) key ^= Zobrist.piece(piece.side, piece.getType(), square);
+		}
+		if(turn == Side.BLACK) key ^= Zobrist.blackToMove();
+		for (Side side : Side.values()) {
+			if(translocated[side.ordinal()]) key ^= Zobrist.translocated(side);
+		}
+		if(diStep >= 0) key ^= Zobrist.diStep(diStep);
+		return key;
+	}
+	
+	public static int square(int x, int y) {
+		return (y << 3) | x;
+	}
+	
+	public static int square(Coordinate2D coord) {
+		return (coord.y << 3) | coord.x;
+	}
+	
+	public static boolean isOnBoard(Coordinate2D coord) {
+		return coord.x < 8 && coord.x >= 0 && coord.y < 8 && coord.y >= 0;
+	}
+	
+	private static int checkedSquare(Coordinate2D coord) {
+		if(!isOnBoard(coord)) throw new IllegalArgumentException("Coordinate out of chessboard: (" + coord.x + ", " + coord.y + ")");
+		return square(coord);
+	}
+	
+	/**
+	 * @return The square step from one square towards the other along a rank or file
+	 */
+	private static int step(int from, int to) {
+		return Integer.signum((to & 7) - (from & 7)) + 8 * Integer.signum((to >>> 3) - (from >>> 3));
+	}
+	
+	private static int bitboardIndex(Side side, PieceType type) {
+		return side.ordinal() * PIECE_TYPES + type.ordinal();
+	}
+	
 	public static Piece[][] toArray(Map<Coordinate2D, Piece> grid){
 		Piece[][] pieces = new Piece[8][8];
 		for (Entry<Coordinate2D, Piece> entry : grid.entrySet()) {
 			Coordinate2D coord = entry.getKey();
-			if(coord.x < 8 && coord.x >= 0 && coord.y < 8 && coord.y >= 0) {
+			if(isOnBoard(coord)) {
 				pieces[coord.x][coord.y] = entry.getValue();
 			}
 		}
@@ -73,53 +646,53 @@ public final class Chessboard {
 	}
 	
 	public static void standardStartup(Chessboard chessboard){
-		Map<Coordinate2D, Piece> grid = chessboard.grid;
 		chessboard.gridRWL.writeLock().lock();
-		//grid.put(new Coordinate2D(2, 2), PieceFactory.createPiece(Side.BLACK, PieceType.BISHOP)); // Example
+		//chessboard.put(square(2, 2), PieceFactory.createPiece(Side.BLACK, PieceType.BISHOP)); // Example
 		
 		// White Pawns
 		for(int i=0;i<8;i++) {
-			grid.put(new Coordinate2D(i, 1), PieceFactory.createPiece(Side.WHITE, PieceType.PAWN));
+			chessboard.put(square(i, 1), PieceFactory.createPiece(Side.WHITE, PieceType.PAWN));
 		}
 		
 		// White Rooks
-		grid.put(new Coordinate2D(0, 0), PieceFactory.createPiece(Side.WHITE, PieceType.ROOK));
-		grid.put(new Coordinate2D(7, 0), PieceFactory.createPiece(Side.WHITE, PieceType.ROOK));
+		chessboard.put(square(0, 0), PieceFactory.createPiece(Side.WHITE, PieceType.ROOK));
+		chessboard.put(square(7, 0), PieceFactory.createPiece(Side.WHITE, PieceType.ROOK));
 		
 		// White Knights
-		grid.put(new Coordinate2D(1, 0), PieceFactory.createPiece(Side.WHITE, PieceType.KNIGHT));
-		grid.put(new Coordinate2D(6, 0), PieceFactory.createPiece(Side.WHITE, PieceType.KNIGHT));
+		chessboard.put(square(1, 0), PieceFactory.createPiece(Side.WHITE, PieceType.KNIGHT));
+		chessboard.put(square(6, 0), PieceFactory.createPiece(Side.WHITE, PieceType.KNIGHT));
 		
 		// White Bishops
-		grid.put(new Coordinate2D(2, 0), PieceFactory.createPiece(Side.WHITE, PieceType.BISHOP));
-		grid.put(new Coordinate2D(5, 0), PieceFactory.createPiece(Side.WHITE, PieceType.BISHOP));
+		chessboard.put(square(2, 0), PieceFactory.createPiece(Side.WHITE, PieceType.BISHOP));
+		chessboard.put(square(5, 0), PieceFactory.createPiece(Side.WHITE, PieceType.BISHOP));
 		
 		// White King and queen
-		grid.put(new Coordinate2D(3, 0), PieceFactory.createPiece(Side.WHITE, PieceType.QUEEN));
-		grid.put(new Coordinate2D(4, 0), PieceFactory.createPiece(Side.WHITE, PieceType.KING));
+		chessboard.put(square(3, 0), PieceFactory.createPiece(Side.WHITE, PieceType.QUEEN));
+		chessboard.put(square(4, 0), PieceFactory.createPiece(Side.WHITE, PieceType.KING));
 		
 		// Black Pawns
 		for(int i=0;i<8;i++) {
-			grid.put(new Coordinate2D(i, 6), PieceFactory.createPiece(Side.BLACK, PieceType.PAWN));
+			chessboard.put(square(i, 6), PieceFactory.createPiece(Side.BLACK, PieceType.PAWN));
 		}
 		
 		// Black Rooks
-		grid.put(new Coordinate2D(0, 7), PieceFactory.createPiece(Side.BLACK, PieceType.ROOK));
-		grid.put(new Coordinate2D(7, 7), PieceFactory.createPiece(Side.BLACK, PieceType.ROOK));
+		chessboard.put(square(0, 7), PieceFactory.createPiece(Side.BLACK, PieceType.ROOK));
+		chessboard.put(square(7, 7), PieceFactory.createPiece(Side.BLACK, PieceType.ROOK));
 		
 		// Black Knights
-		grid.put(new Coordinate2D(1, 7), PieceFactory.createPiece(Side.BLACK, PieceType.KNIGHT));
-		grid.put(new Coordinate2D(6, 7), PieceFactory.createPiece(Side.BLACK, PieceType.KNIGHT));
+		chessboard.put(square(1, 7), PieceFactory.createPiece(Side.BLACK, PieceType.KNIGHT));
+		chessboard.put(square(6, 7), PieceFactory.createPiece(Side.BLACK, PieceType.KNIGHT));
 		
 		// Black Bishops
-		grid.put(new Coordinate2D(2, 7), PieceFactory.createPiece(Side.BLACK, PieceType.BISHOP));
-		grid.put(new Coordinate2D(5, 7), PieceFactory.createPiece(Side.BLACK, PieceType.BISHOP));
+		chessboard.put(square(2, 7), PieceFactory.createPiece(Side.BLACK, PieceType.BISHOP));
+		chessboard.put(square(5, 7), PieceFactory.createPiece(Side.BLACK, PieceType.BISHOP));
 		
 		// Black King and queen
-		grid.put(new Coordinate2D(3, 7), PieceFactory.createPiece(Side.BLACK, PieceType.QUEEN));
-		grid.put(new Coordinate2D(4, 7), PieceFactory.createPiece(Side.BLACK, PieceType.KING));
+		chessboard.put(square(3, 7), PieceFactory.createPiece(Side.BLACK, PieceType.QUEEN));
+		chessboard.put(square(4, 7), PieceFactory.createPiece(Side.BLACK, PieceType.KING));
 		
 		// TODO
+		chessboard.modified();
 		chessboard.gridRWL.writeLock().unlock();
 	}
 
@@ -0,0 +1,211 @@
+package alan.chessgame_f;
+
+import alan.chessgame_f.chess.PawnAccess;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.chess.PieceFactory;
+import alan.chessgame_f.chess.PieceType;
+
+/**
+ * Forsyth-Edwards Notation, read and written a character at a time. <br>
+ * The fields map onto the rules like this:
+ * <ul>
+ * <li>A pawn off its starting rank has moved, so it can't jump two squares.</li>
+ * <li>A side with no castling letter has translocated. Any letter means it still can,
+ * it's written back as "KQ" or "kq" since a translocation doesn't need a particular rook.</li>
+ * <li>The en-passant square is behind the pawn that just jumped, the pawn can be taken.</li>
+ * <li>The move counters are read over but not kept, they're written as "0 1".</li>
+ * </ul>
+ */
+public final class Fen {
+	
+	public final static String STANDARD_STARTUP = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+	
+	/**
+	 * The shared pieces by letter, so loading doesn't go through the factory's maps. Pawns are created every time.
+	 */
+	private final static Piece[] PIECES = new Piece[128];
+	
+	static {
+		for (char c : "KQNRBkqnrb".toCharArray()) {
+			PIECES[c] = PieceFactory.createPiece(c < 'a' ? Side.WHITE : Side.BLACK, toType(c));
+		}
+	}
+	
+	private Fen() {}
+	
+	/**
+	 * @return A new chess-board of the position
+	 * @throws IllegalArgumentException If it's not a valid FEN
+	 */
+	public static Chessboard parse(CharSequence fen) {
+		Chessboard chessboard = new Chessboard();
+		load(chessboard, fen);
+		return chessboard;
+	}
+	
+	/**
+	 * Replaces everything on the chess-board with the position.
+	 *
+	 * @throws IllegalArgumentException If it's not a valid FEN, the chess-board is left as it was
+	 */
+	public static void load(Chessboard chessboard, CharSequence fen) {
+		Piece[] squares = new Piece[64];
+		int length = fen.length();
+		int index = 0;
+		
+		// Placement, from the 8th rank down
+		int x = 0, y = 7;
+		for(; index < length; index++) {
+			char c = fen.charAt(index);
+			if(c == ' ') break;
+			if(c == '/') {
+				if(x != 8 || y == 0) throw invalid(fen, "rank " + (y + 1) + " doesn't have 8 squares");
+				x = 0;
+				y--;
+			} else if(c >= '1' && c <= '8') {
+				x += c - '0';
+				if(x > 8) throw invalid(fen, "rank " + (y + 1) + " has more than 8 squares");
+			} else {
+				if(x > 7) throw invalid(fen, "rank " + (y + 1) + " has more than 8 squares");
+				Piece piece;
+				if(c == 'P' || c == 'p') {
+					if(y == 0 || y == 7) throw invalid(fen, "pawn on rank " + (y + 1));
+					Side side = c == 'P' ? Side.WHITE : Side.BLACK;
+					piece = PieceFactory.createPiece(side, PieceType.PAWN);
+					if(y != (side == Side.WHITE ? 1 : 6)) ((PawnAccess) piece).move();
+				} else {
+					piece = c < PIECES.length ? PIECES[c] : null;
+					if(piece == null) throw invalid(fen, "unknown piece '" + c + "'");
+				}
+				squares[Chessboard.square(x, y)] = piece;
+				x++;
+			}
+		}
+		if(x != 8 || y != 0) throw invalid(fen, "there aren't 8 ranks of 8 squares");
+		
+		// Side to move
+		index = skipSpace(fen, index);
+		if(index >= length) throw invalid(fen, "side to move missing");
+		Side turn;
+		char c = fen.charAt(index++);
+		if(c == 'w') {
+			turn = Side.WHITE;
+		} else if(c == 'b') {
+			turn = Side.BLACK;
+		} else throw invalid(fen, "unknown side '" + c + "'");
+		
+		// Castling, the letters of files are accepted too (Shredder-FEN)
+		boolean[] translocated = {true, true};
+		index = skipSpace(fen, index);
+		if(index < length && fen.charAt(index) == '-') {
+			index++;
+		} else {
+			for(; index < length && fen.charAt(index) != ' '; index++) {
+				c = fen.charAt(index);
+				if(c == 'K' || c == 'Q' || c >= 'A' && c <= 'H') {
+					translocated[Side.WHITE.ordinal()] = false;
+				} else if(c == 'k' || c == 'q' || c >= 'a' && c <= 'h') {
+					translocated[Side.BLACK.ordinal()] = false;
+				} else throw invalid(fen, "unknown castling '" + c + "'");
+			}
+		}
+		
+		// En-passant
+		int diStep = -1;
+		index = skipSpace(fen, index);
+		if(index < length && fen.charAt(index) == '-') {
+			index++;
+		} else if(index + 1 < length) {
+			int fileX = fen.charAt(index) - 'a', rankY = fen.charAt(index + 1) - '1';
+			index += 2;
+			if(fileX < 0 || fileX > 7 || rankY != (turn == Side.WHITE ? 5 : 2)) throw invalid(fen, "bad en-passant square");
+			diStep = Chessboard.square(fileX, turn == Side.WHITE ? 4 : 3);
+			Piece pawn = squares[diStep];
+			if(!(pawn instanceof PawnAccess) || pawn.side == turn) throw invalid(fen, "no pawn to take en-passant");
+			((PawnAccess) pawn).diMoveBuf();
+		}
+		
+		// Half-move clock and move number, optional
+		for(int field = 0; field < 2; field++) {
+			index = skipSpace(fen, index);
+			for(; index < length && fen.charAt(index) != ' '; index++) {
+				if(!Character.isDigit(fen.charAt(index))) throw invalid(fen, "move counter isn't a number");
+			}
+		}
+		if(skipSpace(fen, index) < length) throw invalid(fen, "too many fields");
+		
+		chessboard.load(squares, turn, translocated, diStep);
+	}
+	
+	public static String toString(Chessboard chessboard) {
+		StringBuilder stringBuilder = new StringBuilder(90);
+		for(int y = 7; y >= 0; y--) {
+			int empty = 0;
+			for(int x = 0; x < 8; x++) {
+				Piece piece = chessboard.getPiece(Chessboard.square(x, y));
+				if(piece == null) {
+					empty++;
+					continue;
+				}
+				if(empty > 0) stringBuilder.append((char) ('0' + empty));
+				empty = 0;
+				char letter = toChar(piece.getType());
+				stringBuilder.append(piece.side == Side.WHITE ? letter : Character.toLowerCase(letter));
+			}
+			if(empty > 0) stringBuilder.append((char) ('0' + empty));
+			if(y > 0) stringBuilder.append('/');
+		}
+		
+		Side turn = chessboard.getTurn();
+		stringBuilder.append(turn == Side.WHITE ? " w " : " b ");
+		
+		boolean white = !chessboard.isTranslocated(Side.WHITE), black = !chessboard.isTranslocated(Side.BLACK);
+		if(white) stringBuilder.append("KQ");
+		if(black) stringBuilder.append("kq");
+		if(!white && !black) stringBuilder.append('-');
+		
+		int diStep = chessboard.getDiStep();
+		Piece pawn = diStep >= 0 ? chessboard.getPiece(diStep) : null;
+		if(pawn instanceof PawnAccess && ((PawnAccess) pawn).isDiMove() && pawn.side != turn) {
+			int target = diStep + (pawn.side == Side.WHITE ? -8 : 8);
+			stringBuilder.append(' ').append((char) ('a' + (target & 7))).append((char) ('1' + (target >>> 3)));
+		} else stringBuilder.append(" -");
+		
+		stringBuilder.append(" 0 1");
+		return stringBuilder.toString();
+	}
+	
+	private static int skipSpace(CharSequence fen, int index) {
+		while(index < fen.length() && fen.charAt(index) == ' ') index++;
+		return index;
+	}
+	
+	private static PieceType toType(char c) {
+		switch(c) {
+		case 'K': case 'k': return PieceType.KING;
+		case 'Q': case 'q': return PieceType.QUEEN;
+		case 'N': case 'n': return PieceType.KNIGHT;
+		case 'R': case 'r': return PieceType.ROOK;
+		case 'P': case 'p': return PieceType.PAWN;
+		case 'B': case 'b': return PieceType.BISHOP;
+		default: return null;
+		}
+	}
+	
+	private static char toChar(PieceType type) {
+		switch(type) {
+		case KING: return 'K';
+		case QUEEN: return 'Q';
+		case KNIGHT: return 'N';
+		case ROOK: return 'R';
+		case PAWN: return 'P';
+		case BISHOP: return 'B';
+		default: throw new IllegalArgumentException("Unknown piece type: " + type);
+		}
+	}
+	
+	private static IllegalArgumentException invalid(CharSequence fen, String reason) {
+		return new IllegalArgumentException("Invalid FEN, " + reason + ": " + fen);
+	}
+
+}
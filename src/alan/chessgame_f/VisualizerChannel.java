@@ -0,0 +1,303 @@
+package alan.chessgame_f;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.io.DeltaVisualizer;
+import alan.chessgame_f.io.Visualizer;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * Delivers the events of a game to one visualizer on the executor, in order and one at a time,
+ * so a slow visualizer only holds up itself. <br>
+ * A delta coalesces with the one at the tail of the queue, if any, a delta behind a notification waits on its own.
+ * If more than the capacity wait anyway, the deltas give way to one resync and the messages and checks are dropped,
+ * so are the turn changes and invalid moves but the last. The inquiries and the end of the game always stay,
+ * the game waits on them and the rules keep them few.
+ */
+final class VisualizerChannel implements Runnable {
+	
+	final static int INVALID_MOVE = 0;
+	final static int TURN_CHANGES = 1;
+	final static int GAMEOVER = 2;
+	final static int CHECK = 3;
+	final static int CHECKMATE = 4;
+	final static int STALEMATE = 5;
+	final static int MESSAGE = 6;
+	final static int ASCEND = 7;
+	final static int CAN_TRANSLOCATION = 8;
+	
+	/**
+	 * Events delivered before going back to the executor, so one busy visualizer doesn't keep a thread.
+	 */
+	private final static int BATCH = 64;
+	
+	final static ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Visualizer delivery");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	final Visualizer visualizer;
+	private final Executor executor;
+	private final int capacity;
+	private final AtomicLong coalesced;
+	private final AtomicLong dropped;
+	
+	/**
+	 * {@link BoardDelta}s and {@link Notification}s.
+	 */
+	private final ArrayDeque<Object> events = new ArrayDeque<>();
+	private BoardDelta latest;
+	/**
+	 * The last delta still waiting, the next one coalesces with it while nothing queued after it.
+	 */
+	private BoardDelta pending;
+	private boolean scheduled;
+	private boolean closed;
+	private final Lock lock = new ReentrantLock();
+	private final Condition idle = lock.newCondition();
+	
+	VisualizerChannel(Visualizer visualizer, Executor executor, int capacity, AtomicLong coalesced, AtomicLong dropped) {
+		this.visualizer = visualizer;
+		this.executor = executor;
+		this.capacity = capacity;
+		this.coalesced = coalesced;
+		this.dropped = dropped;
+	}
+	
+	void publish(BoardDelta delta) {
+		lock.lock();
+		try {
+			latest = delta;
+			enqueue(delta);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Sends the latest position whole, nothing happens before the first delta.
+	 */
+	void resync() {
+		lock.lock();
+		try {
+			if(latest != null) enqueue(BoardDelta.resync(latest.sequence, latest.getSnapshot()));
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	void notify(int kind, Side side) {
+		notify(new Notification(kind, side, null, null, null, null));
+	}
+	
+	void notify(int kind, Coordinate2D coord) {
+		notify(new Notification(kind, null, coord, null, null, null));
+	}
+	
+	void notifyInvalidMove(Coordinate2D coord, Coordinate2D dest, Piece piece) {
+		notify(new Notification(INVALID_MOVE, null, coord, dest, piece, null));
+	}
+	
+	void notifyMessage(String message) {
+		notify(new Notification(MESSAGE, null, null, null, null, message));
+	}
+	
+	private void notify(Notification notification) {
+		lock.lock();
+		try {
+			enqueue(notification);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Waits until everything sent so far is delivered, or the time is up.
+	 * 
+	 * @return Whether it's all delivered
+	 */
+	boolean awaitIdle(long millis) {
+		lock.lock();
+		try {
+			long nanos = TimeUnit.MILLISECONDS.toNanos(millis);
+			while(scheduled) {
+				if(nanos <= 0) return false;
+				nanos = idle.awaitNanos(nanos);
+			}
+			return true;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return false;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Drops what's still waiting and everything sent from now on, the one being delivered still goes.
+	 */
+	void close() {
+		lock.lock();
+		try {
+			closed = true;
+			for (Object waiting : events) {
+				if(waiting instanceof Notification) dropped.incrementAndGet();
+			}
+			events.clear();
+			pending = null;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private void enqueue(Object event) {
+		if(closed) {
+			if(event instanceof Notification) dropped.incrementAndGet();
+			return;
+		}
+		if(events.size() >= capacity) collapse();
+		if(event instanceof BoardDelta) {
+			BoardDelta delta = (BoardDelta) event;
+			if(pending != null && events.peekLast() == pending) {
+				// Nothing came after the one waiting, so no notification sees a board ahead of it
+				events.pollLast();
+				delta = pending.coalesce(delta);
+				coalesced.incrementAndGet();
+			}
+			events.addLast(pending = delta);
+		} else events.addLast(event);
+		if(!scheduled) {
+			scheduled = true;
+			executor.execute(this);
+		}
+	}
+	
+	/**
+	 * The deltas waiting make way for a resync where the last of them was, the messages, the checks,
+	 * the turn changes and invalid moves but the last are dropped. The rest keep their order.
+	 */
+	private void collapse() {
+		BoardDelta lastDelta = null;
+		Notification lastTurnChanges = null, lastInvalidMove = null;
+		for (Object waiting : events) {
+			if(waiting instanceof BoardDelta) {
+				lastDelta = (BoardDelta) waiting;
+			} else if(((Notification) waiting).kind == TURN_CHANGES) {
+				lastTurnChanges = (Notification) waiting;
+			} else if(((Notification) waiting).kind == INVALID_MOVE) lastInvalidMove = (Notification) waiting;
+		}
+		pending = null;
+		for(int i = events.size(); i > 0; i--) {
+			Object waiting = events.pollFirst();
+			if(waiting instanceof BoardDelta) {
+				// The position after the last one, so the deltas queued next still follow on
+				if(waiting == lastDelta) events.addLast(pending = BoardDelta.resync(lastDelta.sequence, lastDelta.getSnapshot()));
+				continue;
+			}
+			Notification notification = (Notification) waiting;
+			switch(notification.kind) {
+			case MESSAGE:
+			case CHECK:
+				dropped.incrementAndGet();
+				break;
+			case TURN_CHANGES:
+			case INVALID_MOVE:
+				if(notification == lastTurnChanges || notification == lastInvalidMove) {
+					events.addLast(notification);
+				} else dropped.incrementAndGet();
+				break;
+			default:
+				events.addLast(notification);
+				break;
+			}
+		}
+	}
+	
+	@Override
+	public void run() {
+		for(int delivered = 0; ; delivered++) {
+			Object event;
+			lock.lock();
+			try {
+				if(events.isEmpty()) {
+					scheduled = false;
+					idle.signalAll();
+					return;
+				}
+				event = delivered < BATCH ? events.pollFirst() : null;
+				if(event == pending) pending = null;
+			} finally {
+				lock.unlock();
+			}
+			if(event == null) {
+				executor.execute(this);
+				return;
+			}
+			try {
+				deliver(event);
+			} catch (RuntimeException ex) {
+				// Only this visualizer misses out
+				ex.printStackTrace();
+			}
+		}
+	}
+	
+	private void deliver(Object event) {
+		if(event instanceof BoardDelta) {
+			BoardDelta delta = (BoardDelta) event;
+			if(visualizer instanceof DeltaVisualizer) {
+				((DeltaVisualizer) visualizer).onChessboardDelta(delta);
+			} else visualizer.onChessboardUpdate(delta.getSnapshot().getGrid());
+			return;
+		}
+		Notification notification = (Notification) event;
+		switch(notification.kind) {
+		case INVALID_MOVE: visualizer.onInvalidMove(notification.coord, notification.dest, notification.piece); break;
+		case TURN_CHANGES: visualizer.onTurnChanges(notification.side); break;
+		case GAMEOVER: visualizer.onGameover(notification.side); break;
+		case CHECK: visualizer.onCheck(notification.side); break;
+		case CHECKMATE: visualizer.onCheckmate(notification.side); break;
+		case STALEMATE: visualizer.onStalemate(notification.side); break;
+		case MESSAGE: visualizer.onMessage(notification.message); break;
+		case ASCEND: visualizer.onAscend(notification.coord); break;
+		case CAN_TRANSLOCATION: visualizer.onCanTranslocation(notification.coord); break;
+		default: throw new IllegalStateException("Unknown notification: " + notification.kind);
+		}
+	}
+	
+	private final static class Notification {
+		
+		final int kind;
+		final Side side;
+		final Coordinate2D coord;
+		final Coordinate2D dest;
+		final Piece piece;
+		final String message;
+		
+		Notification(int kind, Side side, Coordinate2D coord, Coordinate2D dest, Piece piece, String message) {
+			this.kind = kind;
+			this.side = side;
+			this.coord = coord;
+			this.dest = dest;
+			this.piece = piece;
+			this.message = message;
+		}
+	
+	}
+
+}
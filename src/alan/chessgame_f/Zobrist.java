@@ -0,0 +1,64 @@
+package alan.chessgame_f;
+
+import alan.chessgame_f.chess.PieceType;
+
+/**
+ * Random keys of the Zobrist hashing, see {@link Chessboard#getKey()}. <br>
+ * The keys come from a fixed seed, so a key means the same position in every run
+ * and can be written to files.
+ */
+public final class Zobrist {
+	
+	private final static int PIECE_TYPES = PieceType.values().length;
+	
+	private final static long[] PIECES = new long[PIECE_TYPES * 2 * 64];
+	private final static long BLACK_TO_MOVE;
+	private final static long[] TRANSLOCATED = new long[2];
+	private final static long[] DI_STEP_FILES = new long[8];
+	
+	static {
+		long[] state = {0x2545F4914F6CDD1DL};
+		for(int i=0;i<PIECES.length;i++) PIECES[i] = next(state);
+		BLACK_TO_MOVE = next(state);
+		for(int i=0;i<TRANSLOCATED.length;i++) TRANSLOCATED[i] = next(state);
+		for(int i=0;i<DI_STEP_FILES.length;i++) DI_STEP_FILES[i] = next(state);
+	}
+	
+	private Zobrist() {}
+	
+	public static long piece(Side side, PieceType type, int square) {
+		return PIECES[((side.ordinal() * PIECE_TYPES + type.ordinal()) << 6) | square];
+	}
+	
+	/**
+	 * Only there while black is to move.
+	 */
+	public static long blackToMove() {
+		return BLACK_TO_MOVE;
+	}
+	
+	/**
+	 * Only there once the side has translocated.
+	 */
+	public static long translocated(Side side) {
+		return TRANSLOCATED[side.ordinal()];
+	}
+	
+	/**
+	 * Only there while a pawn that has just jumped two squares stands on the file.
+	 */
+	public static long diStep(int square) {
+		return DI_STEP_FILES[square & 7];
+	}
+	
+	/**
+	 * SplitMix64
+	 */
+	private static long next(long[] state) {
+		long z = state[0] += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
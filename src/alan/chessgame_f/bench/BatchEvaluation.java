@@ -0,0 +1,85 @@
+package alan.chessgame_f.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import alan.chessgame_f.engine.BatchEvaluator;
+import alan.chessgame_f.record.GameRecord;
+import alan.chessgame_f.record.GameRecordReader;
+
+/**
+ * Runs a file of positions through {@link BatchEvaluator} and prints the totals and positions/second. <br>
+ * A file ending with ".fen" or ".epd" is read as one FEN per line, anything else as game records,
+ * see {@link alan.chessgame_f.record.GameRecordWriter}.
+ *
+ * Usage: BatchEvaluation [file] [batch size]
+ */
+public final class BatchEvaluation {
+	
+	private static long positions, invalid, checks, checkmates, stalemates, moves;
+	
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("Usage: BatchEvaluation [file] [batch size]");
+			return;
+		}
+		String file = args[0];
+		int batch = args.length > 1 ? Integer.parseInt(args[1]) : 1 << 14;
+		BatchEvaluator evaluator = new BatchEvaluator();
+		
+		long start = System.nanoTime();
+		if(file.endsWith(".fen") || file.endsWith(".epd")) {
+			String[] fens = new String[batch];
+			long[] results = new long[batch];
+			try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+				int count;
+				do {
+					String line;
+					for(count = 0; count < batch && (line = reader.readLine()) != null; ) {
+						if(!line.trim().isEmpty()) fens[count++] = line.trim();
+					}
+					evaluator.evaluate(fens, results, count);
+					for(int i=0;i<count;i++) add(results[i]);
+				} while(count == batch);
+			}
+		} else {
+			// A batch is games here, each is dozens of positions
+			batch = Math.max(batch / 64, 1);
+			GameRecord[] games = new GameRecord[batch];
+			long[][] results = new long[batch][];
+			try (GameRecordReader reader = new GameRecordReader(Paths.get(file))) {
+				int count;
+				do {
+					GameRecord game;
+					for(count = 0; count < batch && (game = reader.read()) != null; count++) games[count] = game;
+					evaluator.evaluate(games, results, count);
+					for(int i=0;i<count;i++) {
+						for(int ply = 0; ply <= games[i].getPlies(); ply++) add(results[i][ply]);
+					}
+				} while(count == batch);
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.println(String.format("%d positions in %.2f s, %.0f positions/s on %d threads",
+				positions, seconds, positions / seconds, Runtime.getRuntime().availableProcessors()));
+		System.out.println(String.format("%d invalid, %d in check, %d checkmates, %d stalemates, %.1f legal moves on average",
+				invalid, checks, checkmates, stalemates, moves / (double) Math.max(positions - invalid, 1)));
+	}
+	
+	private static void add(long result) {
+		positions++;
+		if(result == BatchEvaluator.INVALID) {
+			invalid++;
+			return;
+		}
+		moves += BatchEvaluator.legalMoves(result);
+		if(BatchEvaluator.isInCheck(result)) checks++;
+		if(BatchEvaluator.isCheckmate(result)) checkmates++;
+		if(BatchEvaluator.isStalemate(result)) stalemates++;
+	}
+
+}
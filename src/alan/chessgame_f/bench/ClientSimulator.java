@@ -0,0 +1,371 @@
+package alan.chessgame_f.bench;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.PieceType;
+import alan.chessgame_f.server.Frame;
+import alan.chessgame_f.server.GameHost;
+import alan.chessgame_f.server.GameServer;
+
+/**
+ * Loads a {@link GameServer} with clients, all on one selector. Players pair up and play random legal moves,
+ * following the board from the deltas alone, watchers follow the games they hear of. Without an address it starts
+ * a server of its own.
+ *
+ * Usage: ClientSimulator [players] [watchers] [seconds] [host:port]
+ */
+public final class ClientSimulator {
+	
+	/**
+	 * A player quits a game that went on this long.
+	 */
+	private final static int MAX_PLIES = 300;
+	/**
+	 * The most plies a coalesced delta may have, more is counted as a desync.
+	 */
+	private final static int MAX_COALESCED = 3;
+	private final static int READ_BUFFER_SIZE = 1 << 16;
+	
+	private final Selector selector;
+	private final Random random = new Random(7);
+	/**
+	 * The games the players joined, for the watchers to pick from.
+	 */
+	private final List<Integer> games = new ArrayList<>();
+	private final List<Client> clients = new ArrayList<>();
+	
+	private long gamesOver, plies, invalidMoves, desyncs, errors;
+	private long framesIn, bytesIn, watcherFrames;
+	
+	private ClientSimulator() throws IOException {
+		selector = Selector.open();
+	}
+	
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int players = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int watchers = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		
+		GameHost host = null;
+		GameServer server = null;
+		InetSocketAddress address;
+		if(args.length > 3) {
+			int colon = args[3].lastIndexOf(':');
+			address = new InetSocketAddress(args[3].substring(0, colon), Integer.parseInt(args[3].substring(colon + 1)));
+		} else {
+			host = new GameHost();
+			server = new GameServer(host, new InetSocketAddress("127.0.0.1", 0));
+			Thread thread = new Thread(server, "GameServer");
+			thread.setDaemon(true);
+			thread.start();
+			address = new InetSocketAddress("127.0.0.1", server.getPort());
+			System.out.println("Started a server on port " + server.getPort() + (host.isVirtual() ? ", virtual threads" : ""));
+		}
+		
+		ClientSimulator simulator = new ClientSimulator();
+		for(int i = 0; i < players + watchers; i++) simulator.connect(address, i < players);
+		long start = System.nanoTime();
+		simulator.run(start + seconds * 1000000000L);
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		simulator.close();
+		
+		System.out.println(String.format("%d players, %d watchers, %.1f s", players, watchers, elapsed));
+		System.out.println(String.format("%d games over, %d plies, %.0f plies/s", simulator.gamesOver, simulator.plies, simulator.plies / elapsed));
+		System.out.println(String.format("%d frames, %.1f MB in, %d of them to watchers", simulator.framesIn, simulator.bytesIn / 1e6, simulator.watcherFrames));
+		System.out.println(String.format("%d invalid moves, %d desyncs, %d errors", simulator.invalidMoves, simulator.desyncs, simulator.errors));
+		if(server != null) {
+			System.out.println(String.format("Server: %d frames in, %d frames out", server.getFramesIn(), server.getFramesOut()));
+			server.close();
+			host.shutdown();
+		}
+	}
+	
+	private void connect(InetSocketAddress address, boolean player) throws IOException {
+		SocketChannel channel = SocketChannel.open(address);
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Client client = new Client(channel, player);
+		client.key = channel.register(selector, SelectionKey.OP_READ, client);
+		clients.add(client);
+		if(player) send(client, Frame.command(Frame.PLAY));
+	}
+	
+	private void run(long deadline) throws IOException {
+		long nextWatch = 0;
+		for(long now; (now = System.nanoTime()) < deadline; ) {
+			selector.select(Math.max(1, Math.min(100, (deadline - now) / 1000000)));
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+			while(keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+				Client client = (Client) key.attachment();
+				if(!key.isValid()) continue;
+				if(key.isReadable()) read(client);
+				if(key.isValid() && key.isWritable()) write(client);
+			}
+			if(now >= nextWatch && !games.isEmpty()) {
+				// The watchers without a game try one again
+				for (Client client : clients) {
+					if(!client.player && client.game == 0 && client.key.isValid()) watch(client);
+				}
+				nextWatch = now + 100000000L;
+			}
+		}
+	}
+	
+	private void close() {
+		for (Client client : clients) {
+			try {
+				client.channel.close();
+			} catch (IOException ex) {
+				// Closing anyway
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+	}
+	
+	private void read(Client client) throws IOException {
+		ByteBuffer buffer = client.readBuffer;
+		int read;
+		try {
+			read = client.channel.read(buffer);
+		} catch (IOException ex) {
+			read = -1;
+		}
+		if(read < 0) {
+			client.key.cancel();
+			client.channel.close();
+			return;
+		}
+		bytesIn += read;
+		buffer.flip();
+		while(buffer.remaining() >= 4) {
+			int length = buffer.getInt(buffer.position());
+			if(buffer.remaining() < 4 + length) break;
+			int end = buffer.position() + 4 + length;
+			int limit = buffer.limit();
+			buffer.position(buffer.position() + 4).limit(end);
+			framesIn++;
+			if(client.player) {
+				onPlayerFrame(client, buffer);
+			} else onWatcherFrame(client, buffer);
+			buffer.limit(limit).position(end);
+		}
+		buffer.compact();
+	}
+	
+	private void onPlayerFrame(Client client, ByteBuffer buffer) {
+		byte type = buffer.get();
+		switch(type) {
+		case Frame.JOINED:
+			client.game = buffer.getInt();
+			client.side = Side.values()[buffer.get()];
+			client.sequence = -1;
+			client.plies = 0;
+			client.lost = false;
+			games.add(client.game);
+			break;
+		case Frame.DELTA:
+			long since = buffer.getLong(), sequence = buffer.getLong();
+			long changed = buffer.getLong();
+			buffer.position(buffer.position() + 8 * 2);
+			int move = buffer.getShort() & 0xFFFF;
+			if(client.lost) break;
+			if(since < 0 && client.board == null) {
+				// Joined, the game starts from the standard position
+				client.board = new Chessboard();
+				Chessboard.standardStartup(client.board);
+				client.sequence = since = 0;
+			} else if(since < 0) {
+				since = client.sequence;
+			}
+			int behind = (int) (sequence - since);
+			if(since != client.sequence || behind < 0) {
+				desync(client);
+				break;
+			} else if(move != 0) {
+				client.board.play(client.board.expandMove(move));
+			} else if(behind > 0) {
+				// Coalesced, or a resync, find the moves that end up with these squares
+				byte[] expected = new byte[64];
+				for(int square = 0; square < 64; square++) {
+					expected[square] = (changed & 1L << square) != 0 ? buffer.get() : Frame.pieceCode(client.board.getPiece(square));
+				}
+				Chessboard board = behind <= MAX_COALESCED ? search(client.board, expected, behind) : null;
+				if(board == null) {
+					desync(client);
+					break;
+				}
+				client.board = board;
+			}
+			client.plies += behind;
+			if(client.side == Side.WHITE) plies += behind;
+			client.sequence = sequence;
+			break;
+		case Frame.TURN:
+			if(client.board == null || client.lost || buffer.get() != client.side.ordinal()) break;
+			if(client.plies >= MAX_PLIES) {
+				send(client, Frame.command(Frame.QUIT));
+				break;
+			}
+			int[] moves = client.moves;
+			int count = client.board.generateLegalMoves(client.side, moves);
+			if(count == 0) break;
+			client.playing = moves[random.nextInt(count)];
+			send(client, Frame.move(Move.from(client.playing), Move.to(client.playing)));
+			break;
+		case Frame.ASCEND:
+			PieceType ascendType = Move.getAscendType(client.playing);
+			send(client, Frame.ascendTo(ascendType == null ? PieceType.QUEEN : ascendType));
+			break;
+		case Frame.CAN_TRANSLOCATION:
+			send(client, Frame.translocate(Move.is(client.playing, Move.TRANSLOCATION)));
+			break;
+		case Frame.INVALID_MOVE:
+			invalidMoves++;
+			send(client, Frame.command(Frame.QUIT));
+			break;
+		case Frame.GAMEOVER:
+			if(client.side == Side.WHITE) gamesOver++;
+			games.remove(Integer.valueOf(client.game));
+			client.game = 0;
+			client.board = null;
+			send(client, Frame.command(Frame.PLAY));
+			break;
+		case Frame.ERROR:
+			errors++;
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Only checks that the deltas follow one another, see {@link alan.chessgame_f.BoardDelta#since}.
+	 */
+	private void onWatcherFrame(Client client, ByteBuffer buffer) {
+		watcherFrames++;
+		byte type = buffer.get();
+		switch(type) {
+		case Frame.JOINED:
+			client.sequence = -1;
+			break;
+		case Frame.DELTA:
+			long since = buffer.getLong(), sequence = buffer.getLong();
+			if(since >= 0 && since != client.sequence) desyncs++;
+			client.sequence = sequence;
+			break;
+		case Frame.GAMEOVER:
+			send(client, Frame.command(Frame.QUIT));
+			client.game = 0;
+			break;
+		case Frame.ERROR:
+			// The game was over before the watcher got there
+			client.game = 0;
+			break;
+		default:
+			break;
+		}
+	}
+	
+	private void desync(Client client) {
+		desyncs++;
+		client.lost = true;
+		send(client, Frame.command(Frame.QUIT));
+	}
+	
+	/**
+	 * @return The chess-board after the plies that lead to the squares expected, null if none do
+	 */
+	private static Chessboard search(Chessboard board, byte[] expected, int plies) {
+		if(plies == 0) {
+			for(int square = 0; square < 64; square++) {
+				if(Frame.pieceCode(board.getPiece(square)) != expected[square]) return null;
+			}
+			return board;
+		}
+		int[] moves = new int[Move.MAX_MOVES];
+		int count = board.generateLegalMoves(board.getTurn(), moves);
+		for(int i = 0; i < count; i++) {
+			Chessboard next = board.copy();
+			next.play(moves[i]);
+			Chessboard found = search(next, expected, plies - 1);
+			if(found != null) return found;
+		}
+		return null;
+	}
+	
+	private void watch(Client client) {
+		client.game = games.get(random.nextInt(games.size()));
+		send(client, Frame.watch(client.game));
+	}
+	
+	private void send(Client client, Frame frame) {
+		if(!client.key.isValid()) return;
+		client.writing.addLast(frame.buffer());
+		write(client);
+	}
+	
+	private void write(Client client) {
+		try {
+			while(!client.writing.isEmpty()) {
+				ByteBuffer buffer = client.writing.peekFirst();
+				client.channel.write(buffer);
+				if(buffer.hasRemaining()) {
+					client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+					return;
+				}
+				client.writing.pollFirst();
+			}
+			client.key.interestOps(SelectionKey.OP_READ);
+		} catch (IOException ex) {
+			client.key.cancel();
+		}
+	}
+	
+	private final static class Client {
+		
+		final SocketChannel channel;
+		final boolean player;
+		final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		final ArrayDeque<ByteBuffer> writing = new ArrayDeque<>();
+		SelectionKey key;
+		
+		int game;
+		long sequence = -1;
+		
+		Side side;
+		Chessboard board;
+		final int[] moves = new int[Move.MAX_MOVES];
+		int playing;
+		int plies;
+		/**
+		 * Lost track of the board, it quits and waits for the game over.
+		 */
+		boolean lost;
+		
+		Client(SocketChannel channel, boolean player) {
+			this.channel = channel;
+			this.player = player;
+		}
+	
+	}
+
+}
@@ -0,0 +1,163 @@
+package alan.chessgame_f.bench;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Fen;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * Counts the leaf nodes of the move tree to a fixed depth. <br>
+ * The counts are compared with the well known reference numbers, and the time it takes
+ * gives the throughput of the move generator.
+ * Besides the standard startup, a few positions from FEN that stress en-passant, ascends and pins. Positions
+ * with castling are left out, translocation is not the same move.
+ *
+ * Usage: Perft [depth] [verify]
+ */
+public final class Perft {
+	
+	/**
+	 * Perft of the standard startup, index is depth.
+	 */
+	public final static long[] STANDARD_STARTUP = {
+			1L, 20L, 400L, 8902L, 197281L, 4865609L, 119060324L
+	};
+	
+	/**
+	 * FEN and perft by depth of the other positions.
+	 */
+	private final static Object[][] POSITIONS = {
+			{Fen.STANDARD_STARTUP, STANDARD_STARTUP},
+			// Rook and pawns endgame, checks and en-passant pins
+			{"8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+					new long[] {1L, 14L, 191L, 2812L, 43238L, 674624L, 11030083L}},
+			// Ascends on both sides, including taking on the last rank
+			{"n1n5/PPPk4/8/8/8/8/4Kppp/5N1N b - - 0 1",
+					new long[] {1L, 24L, 496L, 9483L, 182838L, 3605103L, 71179139L}},
+			// Middle game with pieces everywhere
+			{"r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10",
+					new long[] {1L, 46L, 2079L, 89890L, 3894594L, 164075551L}},
+	};
+	
+	private final static Coordinate2D BOUND_A = Coordinate2D.of(0, 0);
+	private final static Coordinate2D BOUND_B = Coordinate2D.of(7, 7);
+	
+	private final int[][] moves;
+	private final boolean verify;
+	
+	/**
+	 * @param maxDepth The deepest perft that will be asked for
+	 * @param verify Whether to check every generated move against {@link Piece#getValidMoves}
+	 * 		and {@link Piece#isMoveValid}, and the Zobrist key against a full rehash, which is a lot slower.
+	 */
+	public Perft(int maxDepth, boolean verify) {
+		moves = new int[maxDepth][Move.MAX_MOVES];
+		this.verify = verify;
+	}
+	
+	/**
+	 * The moves are made and taken back on the chess-board, it's the same position after.
+	 */
+	public long perft(Chessboard chessboard, Side side, int depth) {
+		if(depth == 0) return 1;
+		int[] moves = this.moves[depth - 1];
+		if(verify) verify(chessboard, side, moves);
+		int count = chessboard.generateLegalMoves(side, moves);
+		if(depth == 1) return count;
+		Side opponent = invertSide(side);
+		long nodes = 0;
+		for(int i=0;i<count;i++) {
+			long undo = chessboard.makeMove(moves[i]);
+			nodes += perft(chessboard, opponent, depth - 1);
+			chessboard.unmakeMove(undo);
+		}
+		return nodes;
+	}
+	
+	/**
+	 * Prints the perft of every move on the root, handy to find where two generators disagree.
+	 */
+	public long divide(Chessboard chessboard, Side side, int depth) {
+		int[] moves = new int[Move.MAX_MOVES];
+		int count = chessboard.generateLegalMoves(side, moves);
+		long nodes = 0;
+		for(int i=0;i<count;i++) {
+			long undo = chessboard.makeMove(moves[i]);
+			long childNodes = depth > 1 ? perft(chessboard, invertSide(side), depth - 1) : 1;
+			chessboard.unmakeMove(undo);
+			System.out.println(Move.toString(moves[i]) + ": " + childNodes);
+			nodes += childNodes;
+		}
+		System.out.println("Total: " + nodes);
+		return nodes;
+	}
+	
+	/**
+	 * The rules don't know about checks, so the moves before legal filtering are compared.
+	 */
+	private static void verify(Chessboard chessboard, Side side, int[] moves) {
+		if(chessboard.getKey() != chessboard.computeKey()) {
+			throw new IllegalStateException("Zobrist key drifted from the position");
+		}
+		int count = chessboard.generateMoves(side, moves);
+		Map<Coordinate2D, Piece> grid = chessboard.getSnapshot().getGrid();
+		long[] generated = new long[64];
+		for(int i=0;i<count;i++) {
+			int move = moves[i];
+			Coordinate2D coord = Coordinate2D.of(Move.from(move)), dest = Coordinate2D.of(Move.to(move));
+			if(!grid.get(coord).isMoveValid(grid, coord, dest)) {
+				throw new IllegalStateException("isMoveValid rejects generated move " + Move.toString(move));
+			}
+			generated[Move.from(move)] |= 1L << Move.to(move);
+		}
+		for (Entry<Coordinate2D, Piece> entry : grid.entrySet()) {
+			Piece piece = entry.getValue();
+			if(piece.side != side) continue;
+			long valid = 0;
+			for (Coordinate2D dest : piece.getValidMoves(grid, entry.getKey(), BOUND_A, BOUND_B)) {
+				valid |= 1L << Chessboard.square(dest);
+			}
+			int square = Chessboard.square(entry.getKey());
+			if(valid != generated[square]) {
+				throw new IllegalStateException("getValidMoves disagrees with generateMoves for "
+						+ piece.getType().name() + " on " + Move.toString(Move.of(square, square, 0)).substring(0, 2));
+			}
+		}
+	}
+	
+	private static Side invertSide(Side side) {
+		return side == Side.WHITE ? Side.BLACK : Side.WHITE;
+	}
+	
+	public static void main(String[] args) {
+		int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		boolean verify = args.length > 1 && args[1].equalsIgnoreCase("verify");
+		Perft perft = new Perft(maxDepth, verify);
+		
+		for (Object[] position : POSITIONS) {
+			String fen = (String) position[0];
+			long[] counts = (long[]) position[1];
+			Chessboard chessboard = Fen.parse(fen);
+			
+			System.out.println(fen);
+			System.out.println("depth        nodes     expected     time(ms)      nodes/s");
+			for(int depth = 1; depth <= maxDepth; depth++) {
+				long start = System.nanoTime();
+				long nodes = perft.perft(chessboard, chessboard.getTurn(), depth);
+				long elapsed = System.nanoTime() - start;
+				long expected = depth < counts.length ? counts[depth] : -1;
+				System.out.println(String.format("%5d %12d %12s %12.1f %12.0f  %s",
+						depth, nodes, expected < 0 ? "?" : Long.toString(expected),
+						elapsed / 1e6, nodes * 1e9 / Math.max(elapsed, 1),
+						expected < 0 ? "" : expected == nodes ? "OK" : "MISMATCH"));
+			}
+			System.out.println();
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+package alan.chessgame_f.bench;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+
+import alan.chessgame_f.ChessGame;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.chess.PieceType;
+import alan.chessgame_f.io.Joystick;
+import alan.chessgame_f.io.Visualizer;
+import alan.chessgame_f.record.GameRecord;
+import alan.chessgame_f.record.PgnGame;
+import alan.chessgame_f.record.PgnReader;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * Replays the games of a PGN file through {@link ChessGame}, joy-sticks and all, and checks that the game
+ * records the same moves. A regression test of the game loop against real games.
+ *
+ * Usage: PgnReplay [pgn file] [max games]
+ */
+public final class PgnReplay {
+	
+	public static void main(String[] args) throws IOException {
+		if(args.length < 1) {
+			System.out.println("Usage: PgnReplay [pgn file] [max games]");
+			return;
+		}
+		long maxGames = args.length > 1 ? Long.parseLong(args[1]) : Long.MAX_VALUE;
+		long games = 0, plies = 0, unreadable = 0, failed = 0;
+		long start = System.nanoTime();
+		try (PgnReader reader = new PgnReader(Paths.get(args[0]))) {
+			PgnGame game;
+			while(games < maxGames && (game = reader.read()) != null) {
+				games++;
+				GameRecord expected;
+				try {
+					expected = game.toRecord();
+				} catch (IllegalArgumentException ex) {
+					unreadable++;
+					System.out.println("Game " + games + ": " + ex.getMessage());
+					continue;
+				}
+				GameRecord played = replay(expected);
+				plies += played.getPlies();
+				if(!Arrays.equals(expected.getMoves(), played.getMoves())) {
+					failed++;
+					System.out.println("Game " + games + " went off after " + played.getPlies() + " of " + expected.getPlies() + " plies");
+				}
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%d games, %d plies in %.1f s, %d unreadable, %d failed",
+				games, plies, seconds, unreadable, failed));
+	}
+	
+	/**
+	 * Runs the game on this thread, the players answer from their visualizer calls.
+	 */
+	public static GameRecord replay(GameRecord record) {
+		ChessGame chessGame = new ChessGame(ChessGame.DEFAULT_COMMAND_CAPACITY, record.getFen());
+		Script script = new Script(record);
+		chessGame.setVisualizer(new ScriptedPlayer(chessGame.blackJoystick, Side.BLACK, script), Side.BLACK);
+		chessGame.setVisualizer(new ScriptedPlayer(chessGame.whiteJoystick, Side.WHITE, script), Side.WHITE);
+		chessGame.run();
+		return chessGame.getRecord();
+	}
+	
+	private final static class Script {
+		
+		final GameRecord record;
+		int ply;
+		int playing;
+		
+		Script(GameRecord record) {
+			this.record = record;
+		}
+	
+	}
+	
+	private final static class ScriptedPlayer implements Visualizer {
+		
+		private final Joystick joystick;
+		private final Side side;
+		private final Script script;
+		
+		ScriptedPlayer(Joystick joystick, Side side, Script script) {
+			this.joystick = joystick;
+			this.side = side;
+			this.script = script;
+		}
+		
+		@Override
+		public void onTurnChanges(Side side) {
+			if(side != this.side) return;
+			if(script.ply == script.record.getPlies()) {
+				joystick.quit();
+				return;
+			}
+			script.playing = script.record.getMove(script.ply++);
+			joystick.move(Coordinate2D.of(Move.from(script.playing)), Coordinate2D.of(Move.to(script.playing)));
+		}
+		
+		@Override
+		public void onAscend(Coordinate2D coord) {
+			PieceType type = Move.getAscendType(script.playing);
+			joystick.ascendTo(type == null ? PieceType.QUEEN : type);
+		}
+		
+		@Override
+		public void onCanTranslocation(Coordinate2D coord) {
+			joystick.decideTranslocation(Move.is(script.playing, Move.TRANSLOCATION));
+		}
+		
+		@Override
+		public void onInvalidMove(Coordinate2D coord, Coordinate2D dest, Piece piece) {
+			joystick.quit();
+		}
+		
+		@Override
+		public void onChessboardUpdate(Map<Coordinate2D, Piece> chessboard) {}
+		
+		@Override
+		public void onGameover(Side side) {}
+		
+		@Override
+		public void onMessage(String message) {}
+	
+	}
+
+}
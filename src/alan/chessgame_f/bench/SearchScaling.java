@@ -0,0 +1,45 @@
+package alan.chessgame_f.bench;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.engine.ParallelSearch;
+import alan.chessgame_f.engine.Search;
+import alan.chessgame_f.engine.TranspositionTable;
+
+/**
+ * Searches the standard startup for a fixed time with 1, 2, 4, ... threads,
+ * and prints how the nodes/second scale with the thread count.
+ *
+ * Usage: SearchScaling [max threads] [millis] [table MB]
+ */
+public final class SearchScaling {
+	
+	public static void main(String[] args) {
+		int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		long millis = args.length > 1 ? Long.parseLong(args[1]) : 3000;
+		int megabytes = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+		
+		Chessboard chessboard = new Chessboard();
+		Chessboard.standardStartup(chessboard);
+		
+		// Warm up the JIT first, or the single thread run looks slow
+		new Search(Search.MAX_PLY - 1, 0, millis, new TranspositionTable(megabytes)).search(chessboard);
+		
+		System.out.println("threads  depth  move       nodes      nodes/s  nodes/s/thread  speedup");
+		double baseline = 0;
+		for(int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+			ParallelSearch search = new ParallelSearch(threads, Search.MAX_PLY - 1, 0, millis, new TranspositionTable(megabytes));
+			long start = System.nanoTime();
+			Search.Result result = search.search(chessboard);
+			long elapsed = System.nanoTime() - start;
+			search.shutdown();
+			
+			double nps = result.nodes * 1e9 / Math.max(elapsed, 1);
+			if(threads == 1) baseline = nps;
+			System.out.println(String.format("%7d %6d  %-5s %12d %12.0f %15.0f %8.2f",
+					threads, result.depth, Move.toString(result.move), result.nodes, nps, nps / threads, nps / baseline));
+			if(threads == maxThreads) break;
+		}
+	}
+
+}
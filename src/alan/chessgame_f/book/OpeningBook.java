@@ -0,0 +1,148 @@
+package alan.chessgame_f.book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.chess.Move;
+
+/**
+ * A book of opening moves, memory-mapped and looked up by {@link Chessboard#getKey()} with a binary search. <br>
+ * Lookups make no garbage, and the book can be shared by any number of players. See {@link OpeningBookBuilder}.
+ *
+ * <pre>
+ * header  : magic "CGB1", 4 bytes unused, entries (long)
+ * entries : 16 bytes each, sorted by key then move
+ *   key    (long)
+ *   move   (short) see {@link Move#compact(int)}
+ *   weight (short) how many games played it, up to 65535
+ *   points (int)   half points the games scored for the side that played it
+ * </pre>
+ */
+public final class OpeningBook implements Closeable {
+	
+	public final static int MAGIC = 0x43474231;
+	
+	final static int HEADER_SIZE = 16;
+	final static int ENTRY_SIZE = 16;
+	
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int entries;
+	
+	public OpeningBook(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		try {
+			long size = channel.size();
+			if(size < HEADER_SIZE) throw new IOException("Not an opening book, it's too short");
+			if(size > Integer.MAX_VALUE) throw new IOException("Opening book over 2 GB: " + size);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			int magic = buffer.getInt(0);
+			if(magic != MAGIC) throw new IOException("Not an opening book: " + Integer.toHexString(magic));
+			long entries = buffer.getLong(8);
+			if(entries < 0 || HEADER_SIZE + entries * ENTRY_SIZE > size) throw new IOException("Opening book cut off");
+			this.entries = (int) entries;
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+	
+	public int getEntries() {
+		return entries;
+	}
+	
+	/**
+	 * @return The index of the first entry of the key, or -1 if the position is not in the book
+	 */
+	public int find(long key) {
+		int low = 0, high = entries;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(getKey(middle) < key) low = middle + 1;
+			else high = middle;
+		}
+		return low < entries && getKey(low) == key ? low : -1;
+	}
+	
+	public long getKey(int index) {
+		return buffer.getLong(offset(index));
+	}
+	
+	/**
+	 * @return The move in 16 bits, see {@link Chessboard#expandMove(int)}
+	 */
+	public int getMove(int index) {
+		return buffer.getShort(offset(index) + 8) & 0xFFFF;
+	}
+	
+	public int getWeight(int index) {
+		return buffer.getShort(offset(index) + 10) & 0xFFFF;
+	}
+	
+	public int getPoints(int index) {
+		return buffer.getInt(offset(index) + 12);
+	}
+	
+	/**
+	 * Picks one of the book moves of the position, the more games played it the likelier.
+	 * Entries that aren't legal in the position, from a key collision, are passed over.
+	 *
+	 * @param moves A buffer for the legal moves, {@link Move#MAX_MOVES} long
+	 * @return The packed move with its ascend type and translocation, or 0 if the position is not in the book
+	 */
+	public int probe(Chessboard chessboard, int[] moves) {
+		int first = find(chessboard.getKey());
+		if(first < 0) return 0;
+		int count = chessboard.generateLegalMoves(chessboard.getTurn(), moves);
+		int total = 0;
+		for(int index = first; index < entries && getKey(index) == getKey(first); index++) {
+			if(isLegal(moves, count, getMove(index))) total += getWeight(index);
+		}
+		if(total == 0) return 0;
+		int pick = ThreadLocalRandom.current().nextInt(total);
+		for(int index = first; ; index++) {
+			int move = getMove(index);
+			if(!isLegal(moves, count, move)) continue;
+			pick -= getWeight(index);
+			if(pick < 0) return chessboard.expandMove(move);
+		}
+	}
+	
+	/**
+	 * Nothing to unmap, the mapping goes with the buffer.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * Compared by the squares and the translocation, the ascend type is whatever the book says. A translocation
+	 * has to be one of the legal moves itself, the plain rook move being legal doesn't make the king's passage safe.
+	 */
+	private static boolean isLegal(int[] moves, int count, int move) {
+		int mask = Move.of(63, 63, Move.TRANSLOCATION);
+		for(int i=0;i<count;i++) {
+			if((moves[i] & mask) == (move & mask)) return true;
+		}
+		return false;
+	}
+	
+	private static int offset(int index) {
+		return HEADER_SIZE + index * ENTRY_SIZE;
+	}
+	
+	static void putHeader(ByteBuffer buffer, long entries) {
+		buffer.putInt(MAGIC);
+		buffer.putInt(0);
+		buffer.putLong(entries);
+	}
+
+}
@@ -0,0 +1,216 @@
+package alan.chessgame_f.book;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Fen;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.record.GameRecord;
+import alan.chessgame_f.record.PgnGame;
+import alan.chessgame_f.record.PgnReader;
+import alan.chessgame_f.record.San;
+
+/**
+ * Compiles an {@link OpeningBook} from games, the first plies of every game go in. <br>
+ * Every position and move seen is kept as two longs until the book is written, then they are sorted
+ * and the same moves of the same positions are merged.
+ *
+ * Usage: OpeningBookBuilder [book file] [max plies] [min games] [pgn files...]
+ */
+public final class OpeningBookBuilder {
+	
+	private final int maxPlies;
+	private final Chessboard chessboard = new Chessboard();
+	
+	/**
+	 * Position keys, and the move and points of each.
+	 */
+	private long[] keys = new long[1 << 16];
+	private long[] data = new long[1 << 16];
+	private int size;
+	private long games;
+	
+	/**
+	 * @param maxPlies How many plies of each game go in
+	 */
+	public OpeningBookBuilder(int maxPlies) {
+		if(maxPlies < 1) throw new IllegalArgumentException("At least one ply is needed: " + maxPlies);
+		this.maxPlies = maxPlies;
+	}
+	
+	/**
+	 * Adds the game up to the max plies, or up to the first move that can't be read.
+	 *
+	 * @return Whether all of the plies went in
+	 */
+	public boolean add(PgnGame game) {
+		String fen = game.getTag("FEN");
+		int result = PgnGame.toResult(game.getResult());
+		try {
+			Fen.load(chessboard, fen == null ? Fen.STANDARD_STARTUP : fen);
+		} catch (IllegalArgumentException ex) {
+			return false;
+		}
+		games++;
+		for(int ply = 0; ply < maxPlies && ply < game.getMoves().size(); ply++) {
+			int move;
+			try {
+				move = San.parse(chessboard, game.getMoves().get(ply));
+			} catch (IllegalArgumentException ex) {
+				return false;
+			}
+			add(move, result);
+		}
+		return true;
+	}
+	
+	public void add(GameRecord record) {
+		String fen = record.getFen();
+		Fen.load(chessboard, fen == null ? Fen.STANDARD_STARTUP : fen);
+		games++;
+		for(int ply = 0; ply < maxPlies && ply < record.getPlies(); ply++) {
+			add(chessboard.expandMove(record.getMove(ply)), record.getResult());
+		}
+	}
+	
+	public long getGames() {
+		return games;
+	}
+	
+	/**
+	 * Sorts what has been added and writes it, the builder can go on adding after.
+	 *
+	 * @param minWeight Moves played by fewer games are left out
+	 * @return How many entries were written
+	 */
+	public long write(Path path, int minWeight) throws IOException {
+		sort(0, size - 1);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+		long entries = 0;
+		try (FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			// The header is written last, once the entries are counted
+			channel.position(OpeningBook.HEADER_SIZE);
+			for(int i = 0; i < size; ) {
+				long key = keys[i];
+				int move = (int) (data[i] >>> 32);
+				int weight = 0, points = 0;
+				for(; i < size && keys[i] == key && (int) (data[i] >>> 32) == move; i++) {
+					weight++;
+					points += (int) data[i];
+				}
+				if(weight < minWeight) continue;
+				if(buffer.remaining() < OpeningBook.ENTRY_SIZE) drain(channel, buffer);
+				buffer.putLong(key);
+				buffer.putShort((short) move);
+				buffer.putShort((short) Math.min(weight, 0xFFFF));
+				buffer.putInt(points);
+				entries++;
+			}
+			drain(channel, buffer);
+			OpeningBook.putHeader(buffer, entries);
+			buffer.flip();
+			for(long position = 0; buffer.hasRemaining(); ) position += channel.write(buffer, position);
+		}
+		return entries;
+	}
+	
+	private void add(int move, int result) {
+		Side side = chessboard.getTurn();
+		// Half points, an unknown result counts as a draw
+		int points = result == GameRecord.WHITE_WINS ? (side == Side.WHITE ? 2 : 0)
+				: result == GameRecord.BLACK_WINS ? (side == Side.BLACK ? 2 : 0) : 1;
+		if(size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			data = Arrays.copyOf(data, size * 2);
+		}
+		keys[size] = chessboard.getKey();
+		data[size] = (long) (Move.compact(move) & 0xFFFF) << 32 | points;
+		size++;
+		chessboard.play(move);
+	}
+	
+	/**
+	 * Quick sort of the two arrays together, by key then move.
+	 */
+	private void sort(int low, int high) {
+		while(low < high) {
+			if(high - low < 16) {
+				for(int i = low + 1; i <= high; i++) {
+					for(int j = i; j > low && compare(j - 1, j) > 0; j--) swap(j - 1, j);
+				}
+				return;
+			}
+			int middle = (low + high) >>> 1;
+			long pivotKey = keys[middle], pivotMove = data[middle] >>> 32;
+			int i = low, j = high;
+			while(i <= j) {
+				while(compare(i, pivotKey, pivotMove) < 0) i++;
+				while(compare(j, pivotKey, pivotMove) > 0) j--;
+				if(i <= j) swap(i++, j--);
+			}
+			// The smaller side first, so the stack stays shallow
+			if(j - low < high - i) {
+				sort(low, j);
+				low = i;
+			} else {
+				sort(i, high);
+				high = j;
+			}
+		}
+	}
+	
+	private int compare(int a, int b) {
+		return compare(a, keys[b], data[b] >>> 32);
+	}
+	
+	private int compare(int index, long key, long move) {
+		if(keys[index] != key) return keys[index] < key ? -1 : 1;
+		return Long.compare(data[index] >>> 32, move);
+	}
+	
+	private void swap(int a, int b) {
+		long key = keys[a];
+		keys[a] = keys[b];
+		keys[b] = key;
+		long value = data[a];
+		data[a] = data[b];
+		data[b] = value;
+	}
+	
+	private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) channel.write(buffer);
+		buffer.clear();
+	}
+	
+	public static void main(String[] args) throws IOException {
+		if(args.length < 4) {
+			System.out.println("Usage: OpeningBookBuilder [book file] [max plies] [min games] [pgn files...]");
+			return;
+		}
+		OpeningBookBuilder builder = new OpeningBookBuilder(Integer.parseInt(args[1]));
+		int minWeight = Integer.parseInt(args[2]);
+		long unreadable = 0;
+		long start = System.nanoTime();
+		for(int i = 3; i < args.length; i++) {
+			try (PgnReader reader = new PgnReader(Paths.get(args[i]))) {
+				PgnGame game;
+				while((game = reader.read()) != null) {
+					if(!builder.add(game)) unreadable++;
+				}
+			}
+		}
+		long entries = builder.write(Paths.get(args[0]), minWeight);
+		System.out.println(String.format("%d games (%d cut short), %d entries in %.1f s",
+				builder.getGames(), unreadable, entries, (System.nanoTime() - start) / 1e9));
+	}
+
+}
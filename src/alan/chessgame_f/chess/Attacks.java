@@ -0,0 +1,192 @@
+package alan.chessgame_f.chess;
+
+import alan.chessgame_f.Side;
+
+/**
+ * Precomputed attack tables, one mask per square, built once when the class loads. <br>
+ * Knights, kings and pawns are a single lookup. Sliding pieces use magic bitboards: the blockers that
+ * matter are multiplied by a magic number, and the top bits index a table of attacks made for the square.
+ * The magics are searched for while loading, from a fixed seed so it's the same every time.
+ */
+public final class Attacks {
+	
+	private final static int[][] KNIGHT_STEPS = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+	private final static int[][] KING_STEPS = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+	
+	/*
+	 * Directions of the rays, the first four go up the square index and the last four go down.
+	 */
+	private final static int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}, {0, -1}, {-1, 0}, {-1, -1}, {1, -1}};
+	private final static int NORTH = 0, EAST = 1, NORTH_EAST = 2, NORTH_WEST = 3;
+	private final static int SOUTH = 4, WEST = 5, SOUTH_WEST = 6, SOUTH_EAST = 7;
+	
+	private final static long[] KNIGHT = new long[64];
+	private final static long[] KING = new long[64];
+	private final static long[][] PAWN = new long[2][64];
+	private final static long[][] RAYS = new long[DIRECTIONS.length][64];
+	
+	/**
+	 * Seeds per rank that find every magic within a few tries, the ones Stockfish uses with the same generator.
+	 */
+	private final static long[] MAGIC_SEEDS = {728, 10316, 55013, 32803, 12281, 15100, 16645, 255};
+	
+	private final static long RANK_1 = 0xFFL, RANK_8 = 0xFFL << 56;
+	private final static long FILE_A = 0x0101010101010101L, FILE_H = FILE_A << 7;
+	
+	private final static long[] ROOK_MASKS = new long[64];
+	private final static long[] ROOK_MAGICS = new long[64];
+	private final static int[] ROOK_SHIFTS = new int[64];
+	private final static long[][] ROOK_ATTACKS = new long[64][];
+	
+	private final static long[] BISHOP_MASKS = new long[64];
+	private final static long[] BISHOP_MAGICS = new long[64];
+	private final static int[] BISHOP_SHIFTS = new int[64];
+	private final static long[][] BISHOP_ATTACKS = new long[64][];
+	
+	static {
+		for(int square = 0; square < 64; square++) {
+			int x = square & 7, y = square >>> 3;
+			KNIGHT[square] = steps(x, y, KNIGHT_STEPS);
+			KING[square] = steps(x, y, KING_STEPS);
+			PAWN[Side.WHITE.ordinal()][square] = steps(x, y, new int[][] {{1, 1}, {-1, 1}});
+			PAWN[Side.BLACK.ordinal()][square] = steps(x, y, new int[][] {{1, -1}, {-1, -1}});
+			for(int direction = 0; direction < DIRECTIONS.length; direction++) {
+				long ray = 0;
+				int dx = DIRECTIONS[direction][0], dy = DIRECTIONS[direction][1];
+				for(int destX = x + dx, destY = y + dy; destX >= 0 && destX < 8 && destY >= 0 && destY < 8; destX += dx, destY += dy) {
+					ray |= 1L << ((destY << 3) | destX);
+				}
+				RAYS[direction][square] = ray;
+			}
+		}
+		
+		for(int square = 0; square < 64; square++) {
+			// The last square of a ray doesn't block anything behind it
+			ROOK_MASKS[square] = RAYS[NORTH][square] & ~RANK_8 | RAYS[SOUTH][square] & ~RANK_1
+					| RAYS[EAST][square] & ~FILE_H | RAYS[WEST][square] & ~FILE_A;
+			BISHOP_MASKS[square] = (RAYS[NORTH_EAST][square] | RAYS[NORTH_WEST][square]
+					| RAYS[SOUTH_WEST][square] | RAYS[SOUTH_EAST][square]) & ~(RANK_1 | RANK_8 | FILE_A | FILE_H);
+			findMagic(square, true, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_ATTACKS);
+			findMagic(square, false, BISHOP_MASKS, BISHOP_MAGICS, BISHOP_SHIFTS, BISHOP_ATTACKS);
+		}
+	}
+	
+	private Attacks() {}
+	
+	public static long knight(int square) {
+		return KNIGHT[square];
+	}
+	
+	public static long king(int square) {
+		return KING[square];
+	}
+	
+	/**
+	 * @param side The side of the pawn
+	 * @return The squares a pawn on the square takes on
+	 */
+	public static long pawn(Side side, int square) {
+		return PAWN[side.ordinal()][square];
+	}
+	
+	public static long rook(int square, long occupancy) {
+		return ROOK_ATTACKS[square][(int) (((occupancy & ROOK_MASKS[square]) * ROOK_MAGICS[square]) >>> ROOK_SHIFTS[square])];
+	}
+	
+	public static long bishop(int square, long occupancy) {
+		return BISHOP_ATTACKS[square][(int) (((occupancy & BISHOP_MASKS[square]) * BISHOP_MAGICS[square]) >>> BISHOP_SHIFTS[square])];
+	}
+	
+	public static long queen(int square, long occupancy) {
+		return rook(square, occupancy) | bishop(square, occupancy);
+	}
+	
+	/**
+	 * Tries random sparse numbers until one maps every blocker subset of the square
+	 * without two different attacks landing on the same index.
+	 */
+	private static void findMagic(int square, boolean rook, long[] masks, long[] magics, int[] shifts, long[][] tables) {
+		long[] random = {MAGIC_SEEDS[square >>> 3]};
+		long mask = masks[square];
+		int bits = Long.bitCount(mask);
+		long[] occupancies = new long[1 << bits];
+		long[] attacks = new long[1 << bits];
+		// Walks every subset of the mask
+		int size = 0;
+		long subset = 0;
+		do {
+			occupancies[size] = subset;
+			attacks[size] = rook ? rookByRays(square, subset) : bishopByRays(square, subset);
+			size++;
+			subset = (subset - mask) & mask;
+		} while(subset != 0);
+		
+		long[] table = new long[size];
+		// Which try wrote the entry, so the table doesn't have to be cleared between tries
+		int[] tries = new int[size];
+		for(int attempt = 1; ; attempt++) {
+			long magic = nextRandom(random) & nextRandom(random) & nextRandom(random);
+			if(Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) continue;
+			boolean fits = true;
+			for(int i=0;i<size && fits;i++) {
+				int index = (int) ((occupancies[i] * magic) >>> (64 - bits));
+				if(tries[index] != attempt) {
+					tries[index] = attempt;
+					table[index] = attacks[i];
+				} else fits = table[index] == attacks[i];
+			}
+			if(fits) {
+				magics[square] = magic;
+				shifts[square] = 64 - bits;
+				tables[square] = table;
+				return;
+			}
+		}
+	}
+	
+	private static long rookByRays(int square, long occupancy) {
+		return up(NORTH, square, occupancy) | up(EAST, square, occupancy)
+				| down(SOUTH, square, occupancy) | down(WEST, square, occupancy);
+	}
+	
+	private static long bishopByRays(int square, long occupancy) {
+		return up(NORTH_EAST, square, occupancy) | up(NORTH_WEST, square, occupancy)
+				| down(SOUTH_WEST, square, occupancy) | down(SOUTH_EAST, square, occupancy);
+	}
+	
+	/**
+	 * xorshift64*
+	 */
+	private static long nextRandom(long[] state) {
+		long x = state[0];
+		x ^= x >>> 12;
+		x ^= x << 25;
+		x ^= x >>> 27;
+		state[0] = x;
+		return x * 0x2545F4914F6CDD1DL;
+	}
+	
+	private static long up(int direction, int square, long occupancy) {
+		long ray = RAYS[direction][square];
+		long blockers = ray & occupancy;
+		if(blockers == 0) return ray;
+		return ray ^ RAYS[direction][Long.numberOfTrailingZeros(blockers)];
+	}
+	
+	private static long down(int direction, int square, long occupancy) {
+		long ray = RAYS[direction][square];
+		long blockers = ray & occupancy;
+		if(blockers == 0) return ray;
+		return ray ^ RAYS[direction][63 - Long.numberOfLeadingZeros(blockers)];
+	}
+	
+	private static long steps(int x, int y, int[][] steps) {
+		long mask = 0;
+		for (int[] step : steps) {
+			int destX = x + step[0], destY = y + step[1];
+			if(destX >= 0 && destX < 8 && destY >= 0 && destY < 8) mask |= 1L << ((destY << 3) | destX);
+		}
+		return mask;
+	}
+
+}
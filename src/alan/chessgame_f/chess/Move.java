@@ -0,0 +1,109 @@
+package alan.chessgame_f.chess;
+
+/**
+ * Moves packed into an int, so move generation doesn't need to allocate anything. <br>
+ * Squares are indexed as y*8+x, same as {@link alan.chessgame_f.Chessboard#square(int, int)}.
+ *
+ * <pre>
+ * bits  0- 5 : source square
+ * bits  6-11 : destination square
+ * bits 12-13 : ascend type, index of ASCEND_TYPES
+ * bit     14 : ASCEND
+ * bit     15 : TRANSLOCATION
+ * bit     16 : CAPTURE
+ * bit     17 : EN_PASSANT
+ * bit     18 : DOUBLE_STEP
+ * </pre>
+ * 
+ * The low 16 bits alone are enough to store a move, see {@link #compact(int)}.
+ */
+public final class Move {
+	
+	public final static int ASCEND = 1 << 14;
+	public final static int TRANSLOCATION = 1 << 15;
+	public final static int CAPTURE = 1 << 16;
+	public final static int EN_PASSANT = 1 << 17;
+	public final static int DOUBLE_STEP = 1 << 18;
+	
+	/**
+	 * More than enough room for the moves of one side in any position.
+	 */
+	public final static int MAX_MOVES = 256;
+	
+	/**
+	 * Most moves a single piece can have, which is a queen in the middle of an empty board.
+	 */
+	public final static int MAX_PIECE_MOVES = 27;
+	
+	private final static PieceType[] ASCEND_TYPES = {
+			PieceType.QUEEN, PieceType.ROOK, PieceType.KNIGHT, PieceType.BISHOP
+	};
+	
+	private final static char[] ASCEND_CHARS = {'q', 'r', 'n', 'b'};
+	
+	public static int of(int from, int to, int flags) {
+		return from | (to << 6) | flags;
+	}
+	
+	public static int ascend(int from, int to, PieceType type, int flags) {
+		for(int i=0;i<ASCEND_TYPES.length;i++) {
+			if(ASCEND_TYPES[i] == type) return from | (to << 6) | (i << 12) | ASCEND | flags;
+		}
+		throw new IllegalArgumentException("Pawn can't ascend to " + type);
+	}
+	
+	/**
+	 * @return Whether a pawn can ascend to the type, false for null
+	 */
+	public static boolean isAscendType(PieceType type) {
+		for(int i=0;i<ASCEND_TYPES.length;i++) {
+			if(ASCEND_TYPES[i] == type) return true;
+		}
+		return false;
+	}
+	
+	public static int from(int move) {
+		return move & 0x3F;
+	}
+	
+	public static int to(int move) {
+		return (move >>> 6) & 0x3F;
+	}
+	
+	public static boolean is(int move, int flag) {
+		return (move & flag) != 0;
+	}
+	
+	/**
+	 * @return The type that pawn ascends to, or null if it's not an ascending move.
+	 */
+	public static PieceType getAscendType(int move) {
+		if((move & ASCEND) == 0) return null;
+		return ASCEND_TYPES[(move >>> 12) & 3];
+	}
+	
+	/**
+	 * CAPTURE, EN_PASSANT and DOUBLE_STEP are left out, the position before the move tells them again,
+	 * see {@link alan.chessgame_f.Chessboard#expandMove(int)}.
+	 * 
+	 * @return The move in 16 bits
+	 */
+	public static short compact(int move) {
+		return (short) move;
+	}
+	
+	/**
+	 * @return The move in coordinate notation, like "e2e4" or "a7a8q".
+	 */
+	public static String toString(int move) {
+		int from = from(move), to = to(move);
+		StringBuilder stringBuilder = new StringBuilder(5);
+		stringBuilder.append((char) ('a' + (from & 7))).append((char) ('1' + (from >>> 3)));
+		stringBuilder.append((char) ('a' + (to & 7))).append((char) ('1' + (to >>> 3)));
+		if((move & ASCEND) != 0) stringBuilder.append(ASCEND_CHARS[(move >>> 12) & 3]);
+		return stringBuilder.toString();
+	}
+	
+	private Move() {}
+
+}
@@ -0,0 +1,15 @@
+package alan.chessgame_f.chess;
+
+import alan.chessgame_f.Side;
+
+/**
+ * A grid that keeps its occupancy masks ready, so the sliding pieces can look their moves up
+ * without walking the grid. Squares are indexed as y*8+x.
+ */
+public interface OccupancyGrid {
+	
+	public long getOccupancy();
+	
+	public long getOccupancy(Side side);
+
+}
@@ -4,6 +4,11 @@ public interface PawnAccess {
 	
 	public void move();
 	
+	/**
+	 * Takes {@link #move()} back, for {@link alan.chessgame_f.Chessboard#unmakeMove(long)}.
+	 */
+	public void unmove();
+	
 	public void diMoveBuf();
 	
 	public void diMoveCancel();
@@ -4,12 +4,21 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import alan.chessgame_f.Chessboard;
 import alan.chessgame_f.Side;
 import alan.chessgame_f.util.Bound;
 import alan.chessgame_f.util.Coordinate2D;
 
 public abstract class Piece {
 	
+	private final static Coordinate2D[] STRAIGHT_STEPS = {
+			Coordinate2D.of(1, 0), Coordinate2D.of(-1, 0), Coordinate2D.of(0, 1), Coordinate2D.of(0, -1)
+	};
+	
+	private final static Coordinate2D[] DIAGONAL_STEPS = {
+			Coordinate2D.of(1, 1), Coordinate2D.of(1, -1), Coordinate2D.of(-1, 1), Coordinate2D.of(-1, -1)
+	};
+	
 	public final Side side;
 	
 	public Piece(Side side) {
@@ -21,9 +30,51 @@ public abstract class Piece {
 	
 	public abstract boolean isMoveValid(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest);
 	
+	/**
+	 * Same as {@link #getValidMoves(Map, Coordinate2D, Coordinate2D, Coordinate2D)} over the whole board,
+	 * read straight from the squares and bitboards, nothing is hashed or allocated.
+	 * 
+	 * @param chessboard The chess-board the piece stands on
+	 * @param square The square of piece, as y*8+x
+	 * @return The squares it can move to, as bits of y*8+x
+	 */
+	public abstract long getValidMoves(Chessboard chessboard, int square);
+	
+	/**
+	 * Same as {@link #isMoveValid(Map, Coordinate2D, Coordinate2D)}, see {@link #getValidMoves(Chessboard, int)}.
+	 * 
+	 * @param square The square of piece, as y*8+x
+	 * @param dest The destination, as y*8+x
+	 */
+	public boolean isMoveValid(Chessboard chessboard, int square, int dest) {
+		return dest >= 0 && dest < 64 && (getValidMoves(chessboard, square) & (1L << dest)) != 0;
+	}
+	
+	/**
+	 * Allocation-free version of {@link #getValidMoves(Map, Coordinate2D, Coordinate2D, Coordinate2D)}. <br>
+	 * Moves are written as packed ints (see {@link Move}) into the buffer starting at offset, 
+	 * the buffer needs room for {@link Move#MAX_PIECE_MOVES} more moves.
+	 * 
+	 * @param chessboard The chess-board the piece stands on
+	 * @param square The square of piece, as y*8+x
+	 * @param moves The buffer to write into
+	 * @param offset Where to start writing
+	 * @return How many moves are written
+	 */
+	public abstract int generateMoves(Chessboard chessboard, int square, int[] moves, int offset);
+	
 	public abstract PieceType getType();
 	
+	/**
+	 * See {@link PieceFactory#copyPiece(Piece)}, only pieces with a status of their own need a new instance.
+	 */
+	Piece copy() {
+		return this;
+	}
+	
 	static int getMovability(Coordinate2D coord, Map<Coordinate2D, Piece> chessboard, Side side) {
+		// The chess-board can't hold anything outside of 8x8, treat it as blocked.
+		if(coord.x < 0 || coord.x > 7 || coord.y < 0 || coord.y > 7) return 2;
 		Piece piece = chessboard.get(coord);
 		if(piece != null) {
 			if(piece.side == side) {
@@ -36,22 +87,95 @@ public abstract class Piece {
 		}
 	}
 	
-	static void getValidMovesByVec(
-			Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Bound bound, Side side, Set<Coordinate2D> coords,
-			int dx, int dy){
-		for(int x=coord.x, y=coord.y; ; x+=dx,y+=dy){
-			Coordinate2D dest = new Coordinate2D(x, y);
-			if(!bound.isIn(dest)) return;
-			int movability = getMovability(dest, chessboard, side);
-			if(movability < 2) {
-				coords.add(dest);
-				if(movability > 0) {
-					break;
-				}
-			} else {
-				break;
-			}
+	/**
+	 * Where a rook, bishop or queen can go, as bits of y*8+x. Looked up in {@link Attacks} if the grid
+	 * is an {@link OccupancyGrid}, any other grid is walked ray by ray up to the first piece.
+	 */
+	static long getSlidingReach(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Side side, boolean straight, boolean diagonal) {
+		if(chessboard instanceof OccupancyGrid) {
+			OccupancyGrid grid = (OccupancyGrid) chessboard;
+			int square = (coord.y << 3) | coord.x;
+			long attacks = 0;
+			if(straight) attacks |= Attacks.rook(square, grid.getOccupancy());
+			if(diagonal) attacks |= Attacks.bishop(square, grid.getOccupancy());
+			return attacks & ~grid.getOccupancy(side);
 		}
+		long reach = 0;
+		if(straight) {
+			for (Coordinate2D step : STRAIGHT_STEPS) reach |= getRayReach(chessboard, coord, side, step);
+		}
+		if(diagonal) {
+			for (Coordinate2D step : DIAGONAL_STEPS) reach |= getRayReach(chessboard, coord, side, step);
+		}
+		return reach;
+	}
+	
+	private static long getRayReach(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Side side, Coordinate2D step) {
+		long reach = 0;
+		for(int x = coord.x + step.x, y = coord.y + step.y; x >= 0 && x < 8 && y >= 0 && y < 8; x += step.x, y += step.y) {
+			int movability = getMovability(Coordinate2D.of(x, y), chessboard, side);
+			if(movability < 2) reach |= 1L << ((y << 3) | x);
+			if(movability > 0) break;
+		}
+		return reach;
+	}
+	
+	/**
+	 * Same as {@link #getSlidingReach}, but only the ray towards the destination is walked on a plain grid.
+	 */
+	static boolean isSlidingMoveValid(
+			Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest, Side side, boolean straight, boolean diagonal) {
+		if(!isOnBoard(coord) || !isOnBoard(dest)) return false;
+		if(chessboard instanceof OccupancyGrid) {
+			return (getSlidingReach(chessboard, coord, side, straight, diagonal) & (1L << ((dest.y << 3) | dest.x))) != 0;
+		}
+		int dx = dest.x - coord.x, dy = dest.y - coord.y;
+		if(dx == 0 && dy == 0) return false;
+		if(dx == 0 || dy == 0) {
+			if(!straight) return false;
+		} else if(Math.abs(dx) != Math.abs(dy) || !diagonal) return false;
+		int stepX = Integer.signum(dx), stepY = Integer.signum(dy);
+		for(int x = coord.x + stepX, y = coord.y + stepY; x != dest.x || y != dest.y; x += stepX, y += stepY) {
+			if(chessboard.get(Coordinate2D.of(x, y)) != null) return false;
+		}
+		return getMovability(dest, chessboard, side) < 2;
+	}
+	
+	static boolean isOnBoard(Coordinate2D coord) {
+		return coord.x >= 0 && coord.x < 8 && coord.y >= 0 && coord.y < 8;
+	}
+	
+	static void getValidMovesByAttacks(Bound bound, Set<Coordinate2D> coords, long attacks) {
+		for(; attacks != 0; attacks &= attacks - 1) {
+			Coordinate2D dest = Coordinate2D.of(Long.numberOfTrailingZeros(attacks));
+			if(bound.isIn(dest)) coords.add(dest);
+		}
+	}
+	
+	static int generateMovesByAttacks(
+			Chessboard chessboard, int square, Side side, int[] moves, int count, long attacks) {
+		long all = chessboard.getOccupancy();
+		for(attacks &= ~chessboard.getOccupancy(side); attacks != 0; attacks &= attacks - 1) {
+			int dest = Long.numberOfTrailingZeros(attacks);
+			moves[count++] = Move.of(square, dest, (all & (1L << dest)) != 0 ? Move.CAPTURE : 0);
+		}
+		return count;
+	}
+	
+	static int generateMovesBySteps(
+			Chessboard chessboard, int square, Side side, int[] moves, int count, Coordinate2D[] steps) {
+		long own = chessboard.getOccupancy(side);
+		long all = chessboard.getOccupancy();
+		int x = square & 7, y = square >>> 3;
+		for (Coordinate2D step : steps) {
+			int destX = x + step.x, destY = y + step.y;
+			if(destX < 0 || destX > 7 || destY < 0 || destY > 7) continue;
+			int dest = (destY<<3)|destX;
+			long bit = 1L << dest;
+			if((own & bit) != 0) continue;
+			moves[count++] = Move.of(square, dest, (all & bit) != 0 ? Move.CAPTURE : 0);
+		}
+		return count;
 	}
 
 }
@@ -59,20 +183,20 @@ public abstract class Piece {
 final class King extends Piece {
 	
 	private final static Coordinate2D[] RELATIVE_KING_MOVES = {
-			new Coordinate2D(0, 1),
-			new Coordinate2D(1, 1),
-			new Coordinate2D(1, 0),
-			new Coordinate2D(1, -1),
-			new Coordinate2D(0, -1),
-			new Coordinate2D(-1, -1),
-			new Coordinate2D(-1, 0),
-			new Coordinate2D(-1, 1)
+			Coordinate2D.of(0, 1),
+			Coordinate2D.of(1, 1),
+			Coordinate2D.of(1, 0),
+			Coordinate2D.of(1, -1),
+			Coordinate2D.of(0, -1),
+			Coordinate2D.of(-1, -1),
+			Coordinate2D.of(-1, 0),
+			Coordinate2D.of(-1, 1)
 	};
-
+	
 	public King(Side side) {
 		super(side);
 	}
-
+	
 	@Override
 	public Set<Coordinate2D> getValidMoves(
 			Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D boundA, Coordinate2D boundB) {
@@ -80,7 +204,7 @@ final class King extends Piece {
 		Set<Coordinate2D> coords = new HashSet<>();
 		
 		for (Coordinate2D relativeDest : RELATIVE_KING_MOVES) {
-			Coordinate2D absoluteDest = new Coordinate2D(coord.x + relativeDest.x, coord.y + relativeDest.y);
+			Coordinate2D absoluteDest = Coordinate2D.of(coord.x + relativeDest.x, coord.y + relativeDest.y);
 			if(!bound.isIn(absoluteDest)) continue;
 			int movability = getMovability(absoluteDest, chessboard, side);
 			if(movability < 2) {
@@ -89,7 +213,7 @@ final class King extends Piece {
 		}
 		return coords;
 	}
-
+	
 	@Override
 	public boolean isMoveValid(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest) {
 		int dx = dest.x - coord.x;
@@ -100,63 +224,79 @@ final class King extends Piece {
 			else return false;
 		} else return false;
 	}
-
+	
+	@Override
+	public long getValidMoves(Chessboard chessboard, int square) {
+		return Attacks.king(square) & ~chessboard.getOccupancy(side);
+	}
+	
+	@Override
+	public int generateMoves(Chessboard chessboard, int square, int[] moves, int offset) {
+		return generateMovesBySteps(chessboard, square, side, moves, offset, RELATIVE_KING_MOVES) - offset;
+	}
+	
 	@Override
 	public PieceType getType() {
 		return PieceType.KING;
 	}
-	
+
 }
 
 final class Queen extends Piece {
 	
-	private final Rook asRook;
-	private final Bishop asBishop;
-
 	public Queen(Side side) {
 		super(side);
-		asRook = new Rook(side);
-		asBishop = new Bishop(side);
 	}
-
+	
 	@Override
 	public Set<Coordinate2D> getValidMoves(
 			Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D boundA, Coordinate2D boundB) {
 		Set<Coordinate2D> coords = new HashSet<>();
-		coords.addAll(asRook.getValidMoves(chessboard, coord, boundA, boundB));
-		coords.addAll(asBishop.getValidMoves(chessboard, coord, boundA, boundB));
+		if(!isOnBoard(coord)) return coords;
+		long attacks = getSlidingReach(chessboard, coord, side, true, true);
+		getValidMovesByAttacks(new Bound(boundA, boundB), coords, attacks);
 		return coords;
 	}
-
+	
 	@Override
 	public boolean isMoveValid(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest) {
-		return asRook.isMoveValid(chessboard, coord, dest) || asRook.isMoveValid(chessboard, coord, dest);
+		return isSlidingMoveValid(chessboard, coord, dest, side, true, true);
 	}
-
+	
+	@Override
+	public long getValidMoves(Chessboard chessboard, int square) {
+		return Attacks.queen(square, chessboard.getOccupancy()) & ~chessboard.getOccupancy(side);
+	}
+	
+	@Override
+	public int generateMoves(Chessboard chessboard, int square, int[] moves, int offset) {
+		return generateMovesByAttacks(chessboard, square, side, moves, offset, Attacks.queen(square, chessboard.getOccupancy())) - offset;
+	}
+	
 	@Override
 	public PieceType getType() {
 		return PieceType.QUEEN;
 	}
-	
+
 }
 
 final class Knight extends Piece {
 	
 	private final static Coordinate2D[] RELATIVE_KNIGHT_MOVES = {
-			new Coordinate2D(1, 2),
-			new Coordinate2D(2, 1),
-			new Coordinate2D(2, -1),
-			new Coordinate2D(1, -2),
-			new Coordinate2D(-1, -2),
-			new Coordinate2D(-2, -1),
-			new Coordinate2D(-2, 1),
-			new Coordinate2D(-1, 2)
+			Coordinate2D.of(1, 2),
+			Coordinate2D.of(2, 1),
+			Coordinate2D.of(2, -1),
+			Coordinate2D.of(1, -2),
+			Coordinate2D.of(-1, -2),
+			Coordinate2D.of(-2, -1),
+			Coordinate2D.of(-2, 1),
+			Coordinate2D.of(-1, 2)
 	};
-
+	
 	public Knight(Side side) {
 		super(side);
 	}
-
+	
 	@Override
 	public Set<Coordinate2D> getValidMoves(
 			Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D boundA, Coordinate2D boundB) {
@@ -164,7 +304,7 @@ final class Knight extends Piece {
 		Set<Coordinate2D> coords = new HashSet<>();
 		
 		for (Coordinate2D relativeDest : RELATIVE_KNIGHT_MOVES) {
-			Coordinate2D absoluteDest = new Coordinate2D(coord.x + relativeDest.x, coord.y + relativeDest.y);
+			Coordinate2D absoluteDest = Coordinate2D.of(coord.x + relativeDest.x, coord.y + relativeDest.y);
 			if(!bound.isIn(absoluteDest)) continue;
 			int movability = getMovability(absoluteDest, chessboard, side);
 			if(movability < 2) {
@@ -173,7 +313,7 @@ final class Knight extends Piece {
 		}
 		return coords;
 	}
-
+	
 	@Override
 	public boolean isMoveValid(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest) {
 		int dx = dest.x - coord.x;
@@ -184,157 +324,113 @@ final class Knight extends Piece {
 			else return false;
 		} else return false;
 	}
-
+	
+	@Override
+	public long getValidMoves(Chessboard chessboard, int square) {
+		return Attacks.knight(square) & ~chessboard.getOccupancy(side);
+	}
+	
+	@Override
+	public int generateMoves(Chessboard chessboard, int square, int[] moves, int offset) {
+		return generateMovesBySteps(chessboard, square, side, moves, offset, RELATIVE_KNIGHT_MOVES) - offset;
+	}
+	
 	@Override
 	public PieceType getType() {
 		return PieceType.KNIGHT;
 	}
-	
+
 }
 
 final class Rook extends Piece {
-
+	
 	public Rook(Side side) {
 		super(side);
 	}
-
+	
 	@Override
 	public Set<Coordinate2D> getValidMoves(
 			Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D boundA, Coordinate2D boundB) {
-		Bound bound = new Bound(boundA, boundB);
 		Set<Coordinate2D> coords = new HashSet<>();
-		
-		for(int i=1+coord.x; bound.isXIn(i); i++) {
-			
-			Coordinate2D next = new Coordinate2D(i, coord.y);
-			int movability = getMovability(next, chessboard, side);
-			if(movability < 2) {
-				coords.add(next);
-				if(movability > 0) {
-					break;
-				}
-			} else {
-				break;
-			}
-			
-		}
-		
-		for(int i=-1+coord.x; bound.isXIn(i); i--) {
-			
-			Coordinate2D next = new Coordinate2D(i, coord.y);
-			int movability = getMovability(next, chessboard, side);
-			if(movability < 2) {
-				coords.add(next);
-				if(movability > 0) {
-					break;
-				}
-			} else {
-				break;
-			}
-			
-		}
-		
-		for(int i=1+coord.y; bound.isYIn(i); i++) {
-			
-			Coordinate2D next = new Coordinate2D(i, coord.y);
-			int movability = getMovability(next, chessboard, side);
-			if(movability < 2) {
-				coords.add(next);
-				if(movability > 0) {
-					break;
-				}
-			} else {
-				break;
-			}
-			
-		}
-		
-		for(int i=-1+coord.y; bound.isYIn(i); i--) {
-			
-			Coordinate2D next = new Coordinate2D(i, coord.y);
-			int movability = getMovability(next, chessboard, side);
-			if(movability < 2) {
-				coords.add(next);
-				if(movability > 0) {
-					break;
-				}
-			} else {
-				break;
-			}
-			
-		}
+		if(!isOnBoard(coord)) return coords;
+		long attacks = getSlidingReach(chessboard, coord, side, true, false);
+		getValidMovesByAttacks(new Bound(boundA, boundB), coords, attacks);
 		return coords;
 	}
-
+	
 	@Override
 	public boolean isMoveValid(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest) {
-		int dx = dest.x - coord.x;
-		int dy = dest.y - coord.y;
-		if((Math.abs(dx) > 0) != (Math.abs(dy) > 0)) {
-			if(dx > 0) {
-				int i=1;
-				for(;i<dx;i++) {
-					int movability = getMovability(new Coordinate2D(coord.x + i, coord.y), chessboard, side);
-					if(movability != 0) return false;
-				}
-				int movability = getMovability(new Coordinate2D(coord.x + i, coord.y), chessboard, side);
-				if(movability > 1) return false;
-			} else if (dx < 0){
-				int i=-1;
-				for(;i>dx;i--) {
-					int movability = getMovability(new Coordinate2D(coord.x + i, coord.y), chessboard, side);
-					if(movability != 0) return false;
-				}
-				int movability = getMovability(new Coordinate2D(coord.x + i, coord.y), chessboard, side);
-				if(movability > 1) return false;
-			} else if (dy > 0) {
-				int i=1;
-				for(;i<dy;i++) {
-					int movability = getMovability(new Coordinate2D(coord.x, coord.y + i), chessboard, side);
-					if(movability != 0) return false;
-				}
-				int movability = getMovability(new Coordinate2D(coord.x, coord.y + i), chessboard, side);
-				if(movability > 1) return false;
-			} else {
-				int i=-1;
-				for(;i>dy;i--) {
-					int movability = getMovability(new Coordinate2D(coord.x, coord.y + i), chessboard, side);
-					if(movability != 0) return false;
-				}
-				int movability = getMovability(new Coordinate2D(coord.x, coord.y + i), chessboard, side);
-				if(movability > 1) return false;
-			}
-		} else {
-			return false;
-		}
-		return true;
+		return isSlidingMoveValid(chessboard, coord, dest, side, true, false);
 	}
-
+	
+	@Override
+	public long getValidMoves(Chessboard chessboard, int square) {
+		return Attacks.rook(square, chessboard.getOccupancy()) & ~chessboard.getOccupancy(side);
+	}
+	
+	@Override
+	public int generateMoves(Chessboard chessboard, int square, int[] moves, int offset) {
+		long attacks = Attacks.rook(square, chessboard.getOccupancy());
+		int count = generateMovesByAttacks(chessboard, square, side, moves, offset, attacks);
+		if(!chessboard.isTranslocated(side)) count = generateTranslocation(chessboard, square, moves, count, attacks);
+		return count - offset;
+	}
+	
 	@Override
 	public PieceType getType() {
 		return PieceType.ROOK;
 	}
 	
+	/**
+	 * Moving up to its own king from more than one square away, the rook may translocate with it,
+	 * the same as {@link alan.chessgame_f.ChessGame} asks for. It's a move of its own, besides the plain one.
+	 * Whether the king may pass is left to {@link Chessboard#isLegal(int)}.
+	 */
+	private int generateTranslocation(Chessboard chessboard, int square, int[] moves, int count, long attacks) {
+		long king = chessboard.getBitboard(side, PieceType.KING);
+		if(king == 0) return count;
+		int kingSquare = Long.numberOfTrailingZeros(king);
+		int step;
+		if((kingSquare >>> 3) == (square >>> 3)) {
+			step = kingSquare > square ? 1 : -1;
+		} else if((kingSquare & 7) == (square & 7)) {
+			step = kingSquare > square ? 8 : -8;
+		} else return count;
+		int to = kingSquare - step;
+		if(to == square || to == square + step || (attacks & ~chessboard.getOccupancy(side) & (1L << to)) == 0) return count;
+		moves[count++] = Move.of(square, to, Move.TRANSLOCATION | ((chessboard.getOccupancy() & (1L << to)) != 0 ? Move.CAPTURE : 0));
+		return count;
+	}
+
 }
 
 final class Pawn extends Piece implements PawnAccess {
 	
-	private final static Bound NORMAL_PAWN_MOVES = new Bound(new Coordinate2D(-1, -1), new Coordinate2D(1, 1));
-	private final static Bound FIRST_PAWN_MOVES = new Bound(new Coordinate2D(-2, -2), new Coordinate2D(2, 2));
-	private final static Coordinate2D[] KILL_PAWN_MOVES = {
-			new Coordinate2D(1, 1),
-			new Coordinate2D(1, -1),
-			new Coordinate2D(-1, -1),
-			new Coordinate2D(-1, 1)
-	};
+	private final static int[] KILL_PAWN_DX = {1, -1};
+	
+	private final int forward;
+	private final int ascendY;
 	
 	private boolean moved;
 	private boolean diMoved;
-
+	
 	public Pawn(Side side) {
 		super(side);
+		forward = side == Side.WHITE ? 1 : -1;
+		ascendY = side == Side.WHITE ? 7 : 0;
 	}
-
+	
+	private Pawn(Pawn pawn) {
+		this(pawn.side);
+		moved = pawn.moved;
+		diMoved = pawn.diMoved;
+	}
+	
+	@Override
+	Piece copy() {
+		return new Pawn(this);
+	}
+	
 	@Override
 	public Set<Coordinate2D> getValidMoves(
 			Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D boundA, Coordinate2D boundB) {
@@ -342,231 +438,203 @@ final class Pawn extends Piece implements PawnAccess {
 		Bound bound = new Bound(boundA, boundB);
 		Set<Coordinate2D> coords = new HashSet<>();
 		
-		if(moved) {
-			// normal
-			bound = bound.and(NORMAL_PAWN_MOVES.add(coord));
-		} else {
-			// first
-			bound = bound.and(FIRST_PAWN_MOVES.add(coord));
-		}
-		for(int i=1+coord.x; bound.isXIn(i); i++) {
-			
-			Coordinate2D next = new Coordinate2D(i, coord.y);
-			int movability = getMovability(next, chessboard, side);
-			if(movability == 0) {
+		// Straight moves, one step, or two if it has never moved
+		Coordinate2D next = Coordinate2D.of(coord.x, coord.y + forward);
+		if(bound.isIn(next) && getMovability(next, chessboard, side) == 0) {
+			coords.add(next);
+			next = Coordinate2D.of(coord.x, coord.y + forward*2);
+			if(!moved && bound.isIn(next) && getMovability(next, chessboard, side) == 0) {
 				coords.add(next);
-			} else {
-				break;
 			}
-			
 		}
 		
-		for(int i=-1+coord.x; bound.isXIn(i); i--) {
-			
-			Coordinate2D next = new Coordinate2D(i, coord.y);
-			int movability = getMovability(next, chessboard, side);
-			if(movability == 0) {
-				coords.add(next);
-			} else {
-				break;
-			}
-			
+		// Kills and en-passants
+		for (int dx : KILL_PAWN_DX) {
+			Coordinate2D dest = Coordinate2D.of(coord.x + dx, coord.y + forward);
+			if(!bound.isIn(dest)) continue;
+			if(isKillValid(chessboard, coord, dest)) coords.add(dest);
 		}
 		
-		for(int i=1+coord.y; bound.isYIn(i); i++) {
-			
-			Coordinate2D next = new Coordinate2D(i, coord.y);
-			int movability = getMovability(next, chessboard, side);
-			if(movability == 0) {
-				coords.add(next);
-			} else {
-				break;
+		return coords;
+	}
+	
+	@Override
+	public boolean isMoveValid(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest) {
+		
+		int dx = dest.x - coord.x;
+		int dy = dest.y - coord.y;
+		if(dx == 0) {
+			if(dy == forward) {
+				return getMovability(dest, chessboard, side) == 0;
+			} else if(dy == forward*2 && !moved) {
+				return getMovability(Coordinate2D.of(coord.x, coord.y + forward), chessboard, side) == 0
+						&& getMovability(dest, chessboard, side) == 0;
+			} else return false;
+		} else if(Math.abs(dx) == 1 && dy == forward) {
+			return isKillValid(chessboard, coord, dest);
+		} else return false;
+	
+	}
+	
+	private boolean isKillValid(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest) {
+		int movability = getMovability(dest, chessboard, side);
+		if(movability == 1) {
+			return true;
+		} else if(movability == 0) {
+			Piece nextPiece = chessboard.get(Coordinate2D.of(dest.x, coord.y));
+			if(nextPiece instanceof PawnAccess) {
+				PawnAccess pawnAccess = (PawnAccess) nextPiece;
+				return pawnAccess.isDiMove() && nextPiece.side != side;
 			}
-			
 		}
+		return false;
+	}
+	
+	@Override
+	public long getValidMoves(Chessboard chessboard, int square) {
+		int x = square & 7, y = square >>> 3;
+		int nextY = y + forward;
+		if(nextY < 0 || nextY > 7) return 0;
+		long all = chessboard.getOccupancy();
+		long moves = 0;
 		
-		for(int i=-1+coord.y; bound.isYIn(i); i--) {
-			
-			Coordinate2D next = new Coordinate2D(i, coord.y);
-			int movability = getMovability(next, chessboard, side);
-			if(movability == 0) {
-				coords.add(next);
-			} else {
-				break;
-			}
-			
+		int dest = (nextY<<3)|x;
+		if((all & (1L << dest)) == 0) {
+			moves |= 1L << dest;
+			int diDest = dest + forward*8;
+			if(!moved && diDest >= 0 && diDest < 64 && (all & (1L << diDest)) == 0) moves |= 1L << diDest;
 		}
 		
-		// Kills and en-passants
-		for (Coordinate2D killingCoord : KILL_PAWN_MOVES) {
-			Coordinate2D dest = coord.add(killingCoord);
-			int movability = getMovability(dest, chessboard, side);
-			if(movability == 1) {
-				coords.add(dest);
-			} else if(movability == 0) {
-				Piece nextPiece = chessboard.get(new Coordinate2D(coord.x + killingCoord.x, coord.y));
-				if(nextPiece instanceof PawnAccess) {
-					PawnAccess pawnAccess = (PawnAccess) nextPiece;
-					if(pawnAccess.isDiMove() && nextPiece.side != side) {
-						coords.add(dest);
-					} 
-				} 
+		moves |= Attacks.pawn(side, square) & all & ~chessboard.getOccupancy(side);
+		for (int dx : KILL_PAWN_DX) {
+			int destX = x + dx;
+			if(destX < 0 || destX > 7 || (all & (1L << ((nextY<<3)|destX))) != 0) continue;
+			Piece nextPiece = chessboard.getPiece((y<<3)|destX);
+			if(nextPiece instanceof PawnAccess && nextPiece.side != side && ((PawnAccess) nextPiece).isDiMove()) {
+				moves |= 1L << ((nextY<<3)|destX);
 			}
 		}
-		
-		return coords;
+		return moves;
 	}
-
+	
 	@Override
-	public boolean isMoveValid(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest) {
+	public int generateMoves(Chessboard chessboard, int square, int[] moves, int offset) {
+		int count = offset;
+		int x = square & 7, y = square >>> 3;
+		int nextY = y + forward;
+		if(nextY < 0 || nextY > 7) return 0;
+		long all = chessboard.getOccupancy();
+		long enemy = all & ~chessboard.getOccupancy(side);
 		
-		int dx = dest.x - coord.x;
-		int dy = dest.y - coord.y;
-		if(moved) {
-			if(!NORMAL_PAWN_MOVES.isIn(new Coordinate2D(dx, dy))) return false;
-		} else {
-			if(!FIRST_PAWN_MOVES.isIn(new Coordinate2D(dx, dy))) return false;
+		int dest = (nextY<<3)|x;
+		if((all & (1L << dest)) == 0) {
+			count = addMove(moves, count, square, dest, 0);
+			int diDest = dest + forward*8;
+			if(!moved && diDest >= 0 && diDest < 64 && (all & (1L << diDest)) == 0) {
+				moves[count++] = Move.of(square, diDest, Move.DOUBLE_STEP);
+			}
 		}
-		boolean normalValid = true;
-		if((Math.abs(dx) > 0) != (Math.abs(dy) > 0)) {
-			if(dx > 0) {
-				int i=1;
-				for(;i<=dx;i++) {
-					int movability = getMovability(new Coordinate2D(coord.x + i, coord.y), chessboard, side);
-					if(movability != 0) {
-						normalValid = false;
-						break;
-					}
-				}
-			} else if (dx < 0){
-				int i=-1;
-				for(;i>=dx;i--) {
-					int movability = getMovability(new Coordinate2D(coord.x + i, coord.y), chessboard, side);
-					if(movability != 0) {
-						normalValid = false;
-						break;
-					}
-				}
-			} else if (dy > 0) {
-				int i=1;
-				for(;i<=dy;i++) {
-					int movability = getMovability(new Coordinate2D(coord.x, coord.y + i), chessboard, side);
-					if(movability != 0) {
-						normalValid = false;
-						break;
-					}
-				}
-			} else {
-				int i=-1;
-				for(;i>=dy;i--) {
-					int movability = getMovability(new Coordinate2D(coord.x, coord.y + i), chessboard, side);
-					if(movability != 0) {
-						normalValid = false;
-						break;
-					}
+		
+		for (int dx : KILL_PAWN_DX) {
+			int destX = x + dx;
+			if(destX < 0 || destX > 7) continue;
+			dest = (nextY<<3)|destX;
+			long bit = 1L << dest;
+			if((enemy & bit) != 0) {
+				count = addMove(moves, count, square, dest, Move.CAPTURE);
+			} else if((all & bit) == 0) {
+				Piece nextPiece = chessboard.getPiece((y<<3)|destX);
+				if(nextPiece instanceof PawnAccess && nextPiece.side != side && ((PawnAccess) nextPiece).isDiMove()) {
+					moves[count++] = Move.of(square, dest, Move.CAPTURE | Move.EN_PASSANT);
 				}
 			}
-		} else {
-			normalValid = false;
 		}
-		
-		boolean killValid = false; //
-		if(Math.abs(dx) - Math.abs(dy) == 0 && Math.abs(dx) + Math.abs(dy) == 2) {
-			int movability = getMovability(dest, chessboard, side);
-			if(movability == 1) {
-				killValid = true;
-			} else if(movability == 0) {
-				Piece nextPiece = chessboard.get(new Coordinate2D(coord.x + dx, coord.y));
-				if(nextPiece instanceof PawnAccess) {
-					PawnAccess pawnAccess = (PawnAccess) nextPiece;
-					if(pawnAccess.isDiMove() && nextPiece.side != side) {
-						killValid = true;
-					} 
-				} 
-			} 
+		return count - offset;
+	}
+	
+	private int addMove(int[] moves, int count, int square, int dest, int flags) {
+		if((dest >>> 3) == ascendY) {
+			moves[count++] = Move.ascend(square, dest, PieceType.QUEEN, flags);
+			moves[count++] = Move.ascend(square, dest, PieceType.ROOK, flags);
+			moves[count++] = Move.ascend(square, dest, PieceType.KNIGHT, flags);
+			moves[count++] = Move.ascend(square, dest, PieceType.BISHOP, flags);
+		} else {
+			moves[count++] = Move.of(square, dest, flags);
 		}
-		
-		return normalValid || killValid;
-		
+		return count;
 	}
-
+	
 	@Override
 	public PieceType getType() {
 		return PieceType.PAWN;
 	}
-
+	
 	@Override
 	public void move() {
 		moved = true;
 	}
-
+	
+	@Override
+	public void unmove() {
+		moved = false;
+	}
+	
 	@Override
 	public void diMoveBuf() {
 		diMoved = true;
 	}
-
+	
 	@Override
 	public void diMoveCancel() {
 		diMoved = false;
 	}
-
+	
 	@Override
 	public boolean isDiMove() {
 		return diMoved;
 	}
-
+	
 	@Override
 	public boolean isMoved() {
 		return moved;
 	}
-	
+
 }
 
 final class Bishop extends Piece {
-
+	
 	public Bishop(Side side) {
 		super(side);
 	}
-
+	
 	@Override
 	public Set<Coordinate2D> getValidMoves(
 			Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D boundA, Coordinate2D boundB) {
-		Bound bound = new Bound(boundA, boundB);
 		Set<Coordinate2D> coords = new HashSet<>();
-		getValidMovesByVec(chessboard, coord, bound, side, coords, 1, 1);
-		getValidMovesByVec(chessboard, coord, bound, side, coords, 1, -1);
-		getValidMovesByVec(chessboard, coord, bound, side, coords, -1, -1);
-		getValidMovesByVec(chessboard, coord, bound, side, coords, -1, 1);
+		if(!isOnBoard(coord)) return coords;
+		long attacks = getSlidingReach(chessboard, coord, side, false, true);
+		getValidMovesByAttacks(new Bound(boundA, boundB), coords, attacks);
 		return coords;
 	}
-
+	
 	@Override
 	public boolean isMoveValid(Map<Coordinate2D, Piece> chessboard, Coordinate2D coord, Coordinate2D dest) {
-		int dx = dest.x - coord.x;
-		int dy = dest.y - coord.y;
-		if(Math.abs(dx) != Math.abs(dy)) return false;
-		int i=1;
-		for(;i<=dx;i++) {
-			int movability = getMovability(getRelativeCoord(dx, dy, coord, i), chessboard, side);
-			if(movability != 0) return false;
-		}
-		int movability = getMovability(getRelativeCoord(dx, dy, coord, i), chessboard, side);
-		if(movability > 1) return false;
-		return true;
+		return isSlidingMoveValid(chessboard, coord, dest, side, false, true);
 	}
-
+	
 	@Override
-	public PieceType getType() {
-		return PieceType.BISHOP;
+	public long getValidMoves(Chessboard chessboard, int square) {
+		return Attacks.bishop(square, chessboard.getOccupancy()) & ~chessboard.getOccupancy(side);
 	}
 	
-	private static Coordinate2D getRelativeCoord(int dx, int dy, Coordinate2D coord, int di) {
-		int x, y;
-		if(dx > 0) x = di;
-		else x = -di;
-		if(dy > 0) y = di;
-		else y = -di;
-		return new Coordinate2D(coord.x + x, coord.y + y);
+	@Override
+	public int generateMoves(Chessboard chessboard, int square, int[] moves, int offset) {
+		return generateMovesByAttacks(chessboard, square, side, moves, offset, Attacks.bishop(square, chessboard.getOccupancy())) - offset;
 	}
 	
+	@Override
+	public PieceType getType() {
+		return PieceType.BISHOP;
+	}
+
 }
\ No newline at end of file
@@ -39,6 +39,13 @@ public final class PieceFactory {
 		return pieceStorage.get(side).get(type);
 	}
 	
+	/**
+	 * Pawns are copied along with their status, other pieces are shared anyway.
+	 */
+	public static Piece copyPiece(Piece piece) {
+		return piece.copy();
+	}
+	
 	private PieceFactory() {}
 
 }
@@ -128,7 +128,26 @@ public final class Main {
 
 		@Override
 		public void onGameover(Side side) {
-			consoleFrame.out.println(side.name() + " side won the game! Congratulations!");
+			if(side == null) {
+				consoleFrame.out.println("Nobody won the game, it's a draw.");
+			} else consoleFrame.out.println(side.name() + " side won the game! Congratulations!");
+		}
+
+		@Override
+		public void onCheck(Side side) {
+			if(side == this.side) {
+				consoleFrame.out.println("Check! Your king is attacked.");
+			} else consoleFrame.out.println("Check! " + side.name() + " king is attacked.");
+		}
+
+		@Override
+		public void onCheckmate(Side side) {
+			consoleFrame.out.println("Checkmate! " + side.name() + " king can't get away.");
+		}
+
+		@Override
+		public void onStalemate(Side side) {
+			consoleFrame.out.println("Stalemate! " + side.name() + " side has no move left.");
 		}
 
 		@Override
@@ -456,11 +475,11 @@ public final class Main {
 		char y = pos.charAt(1);
 		if((x < 'I' && x >= 'A') || (x < 'i' && x >= 'a')) {
 			if(y < '9' && y >= '1') {
-				return new Coordinate2D(x<='Z' ? x-0x41 : x-0x61, y-0x31);
+				return Coordinate2D.of(x<='Z' ? x-0x41 : x-0x61, y-0x31);
 			} else return null;
 		} else if ((y < 'I' && y >= 'A') || (y < 'i' && y >= 'a')) {
 			if(x < '9' && x >= '1') {
-				return new Coordinate2D(y<='Z' ? y-0x41 : y-0x61, x-0x31);
+				return Coordinate2D.of(y<='Z' ? y-0x41 : y-0x61, x-0x31);
 			} else return null;
 		} else return null;
 	}
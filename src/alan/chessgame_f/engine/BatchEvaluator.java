@@ -0,0 +1,232 @@
+package alan.chessgame_f.engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Fen;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.record.GameRecord;
+
+/**
+ * Evaluates batches of positions on a {@link ForkJoinPool}, for analytics over a lot of games. <br>
+ * Every worker thread keeps its own chess-board and move buffer, the positions are loaded into them,
+ * so a position costs little more than loading it. The results are packed in longs:
+ *
+ * <pre>
+ * bits  0-31 : static evaluation, from the view of the side to move, see {@link Evaluation}
+ * bits 32-39 : legal moves
+ * bit     40 : the side to move is in check
+ * bit     41 : black to move
+ * </pre>
+ */
+public final class BatchEvaluator {
+	
+	/**
+	 * The result of a position that couldn't be read.
+	 */
+	public final static long INVALID = -1L;
+	
+	private final static long CHECK = 1L << 40;
+	private final static long BLACK = 1L << 41;
+	
+	/**
+	 * Positions a task evaluates by itself instead of splitting.
+	 */
+	private final static int POSITIONS_PER_TASK = 256;
+	private final static int GAMES_PER_TASK = 4;
+	
+	private final ForkJoinPool pool;
+	
+	private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+		
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+	
+	/**
+	 * Runs on the common pool.
+	 */
+	public BatchEvaluator() {
+		this(ForkJoinPool.commonPool());
+	}
+	
+	public BatchEvaluator(ForkJoinPool pool) {
+		if(pool == null) throw new NullPointerException("Pool is null");
+		this.pool = pool;
+	}
+	
+	/**
+	 * @param fens The positions, the first count are evaluated
+	 * @param results Where the result of fens[i] goes to results[i], {@link #INVALID} if the FEN isn't valid
+	 */
+	public void evaluate(CharSequence[] fens, long[] results, int count) {
+		if(count > fens.length || count > results.length) throw new IllegalArgumentException("Less than " + count + " positions or results");
+		pool.invoke(new FenTask(fens, results, 0, count));
+	}
+	
+	/**
+	 * Evaluates every position of the games, the start and after each ply.
+	 *
+	 * @param games The games, the first count are evaluated
+	 * @param results The results of games[i] go to results[i], ply by ply. An array shorter than the plies + 1
+	 * 		is replaced, so the same arrays can be passed batch after batch.
+	 * 		A game that goes wrong has {@link #INVALID} from the ply that couldn't be played on.
+	 */
+	public void evaluate(GameRecord[] games, long[][] results, int count) {
+		if(count > games.length || count > results.length) throw new IllegalArgumentException("Less than " + count + " games or results");
+		pool.invoke(new GameTask(games, results, 0, count));
+	}
+	
+	/**
+	 * Evaluates the position on the calling thread.
+	 *
+	 * @param moves The buffer of the legal moves, {@link Move#MAX_MOVES} long
+	 */
+	public static long evaluate(Chessboard chessboard, int[] moves) {
+		Side turn = chessboard.getTurn();
+		long result = Evaluation.evaluate(chessboard) & 0xFFFFFFFFL;
+		result |= (long) chessboard.generateLegalMoves(turn, moves) << 32;
+		if(chessboard.isInCheck(turn)) result |= CHECK;
+		if(turn == Side.BLACK) result |= BLACK;
+		return result;
+	}
+	
+	public static int score(long result) {
+		return (int) result;
+	}
+	
+	public static int legalMoves(long result) {
+		return (int) (result >>> 32) & 0xFF;
+	}
+	
+	public static boolean isInCheck(long result) {
+		return (result & CHECK) != 0;
+	}
+	
+	public static boolean isCheckmate(long result) {
+		return isInCheck(result) && legalMoves(result) == 0;
+	}
+	
+	public static boolean isStalemate(long result) {
+		return !isInCheck(result) && legalMoves(result) == 0;
+	}
+	
+	public static Side getTurn(long result) {
+		return (result & BLACK) != 0 ? Side.BLACK : Side.WHITE;
+	}
+	
+	private long evaluate(CharSequence fen) {
+		Scratch scratch = this.scratch.get();
+		try {
+			Fen.load(scratch.chessboard, fen);
+		} catch (IllegalArgumentException ex) {
+			return INVALID;
+		}
+		return evaluate(scratch.chessboard, scratch.moves);
+	}
+	
+	private void evaluate(GameRecord game, long[] results) {
+		Scratch scratch = this.scratch.get();
+		Chessboard chessboard = scratch.chessboard;
+		String fen = game.getFen();
+		int ply = 0;
+		try {
+			Fen.load(chessboard, fen == null ? Fen.STANDARD_STARTUP : fen);
+			for(; ply <= game.getPlies(); ply++) {
+				results[ply] = evaluate(chessboard, scratch.moves);
+				if(ply == game.getPlies()) return;
+				int move = chessboard.expandMove(game.getMove(ply));
+				if(!contains(scratch.moves, legalMoves(results[ply]), move)) {
+					ply++;
+					break;
+				}
+				chessboard.play(move);
+			}
+		} catch (IllegalArgumentException ex) {
+			// The FEN or a move is broken, the rest can't be evaluated
+		}
+		for(; ply <= game.getPlies(); ply++) results[ply] = INVALID;
+	}
+	
+	/**
+	 * Compared the way the record keeps them, see {@link Move#compact(int)}, so a translocation
+	 * is told apart from the plain rook move.
+	 */
+	private static boolean contains(int[] moves, int count, int move) {
+		short compact = Move.compact(move);
+		for(int i=0;i<count;i++) {
+			if(Move.compact(moves[i]) == compact) return true;
+		}
+		return false;
+	}
+	
+	private final static class Scratch {
+		
+		final Chessboard chessboard = new Chessboard();
+		final int[] moves = new int[Move.MAX_MOVES];
+	
+	}
+	
+	private final class FenTask extends RecursiveAction {
+		
+		private final static long serialVersionUID = 1L;
+		
+		private final CharSequence[] fens;
+		private final long[] results;
+		private final int from, to;
+		
+		FenTask(CharSequence[] fens, long[] results, int from, int to) {
+			this.fens = fens;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= POSITIONS_PER_TASK) {
+				for(int i = from; i < to; i++) results[i] = evaluate(fens[i]);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new FenTask(fens, results, from, middle), new FenTask(fens, results, middle, to));
+		}
+	
+	}
+	
+	private final class GameTask extends RecursiveAction {
+		
+		private final static long serialVersionUID = 1L;
+		
+		private final GameRecord[] games;
+		private final long[][] results;
+		private final int from, to;
+		
+		GameTask(GameRecord[] games, long[][] results, int from, int to) {
+			this.games = games;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= GAMES_PER_TASK) {
+				for(int i = from; i < to; i++) {
+					int positions = games[i].getPlies() + 1;
+					if(results[i] == null || results[i].length < positions) results[i] = new long[Math.max(positions, 128)];
+					evaluate(games[i], results[i]);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new GameTask(games, results, from, middle), new GameTask(games, results, middle, to));
+		}
+	
+	}
+
+}
@@ -0,0 +1,129 @@
+package alan.chessgame_f.engine;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import alan.chessgame_f.ChessGame;
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.book.OpeningBook;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.chess.PieceType;
+import alan.chessgame_f.io.Joystick;
+import alan.chessgame_f.io.Visualizer;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * A computer player, plug it in as the visualizer of its side. <br>
+ * On its turn it copies the chess-board and searches on the executor, so its visualizer calls are never held up,
+ * then plays through the joy-stick like anyone else. <br>
+ * With an {@link OpeningBook}, positions in the book are answered right away without searching.
+ */
+public final class EnginePlayer implements Visualizer {
+	
+	private final ChessGame chessGame;
+	private final Side side;
+	private final Joystick joystick;
+	private final Searcher search;
+	private final Executor executor;
+	private final OpeningBook book;
+	
+	/**
+	 * Buffer of the book lookups, the visualizer calls come one at a time.
+	 */
+	private final int[] bookMoves = new int[Move.MAX_MOVES];
+	
+	/**
+	 * The move being played, for the ascend and translocation questions that come with it.
+	 */
+	private volatile int playingMove;
+	
+	/**
+	 * @param chessGame The game to play
+	 * @param side The side to play
+	 * @param search The search with its limits, only used by this player, see {@link ParallelSearch} for more threads
+	 * @param executor Where the searches run
+	 */
+	public EnginePlayer(ChessGame chessGame, Side side, Searcher search, Executor executor) {
+		this(chessGame, side, search, executor, null);
+	}
+	
+	/**
+	 * @param book The book to look up first, null for none
+	 */
+	public EnginePlayer(ChessGame chessGame, Side side, Searcher search, Executor executor, OpeningBook book) {
+		this.chessGame = chessGame;
+		this.side = side;
+		if(side == Side.BLACK) {
+			joystick = chessGame.blackJoystick;
+		} else if(side == Side.WHITE) {
+			joystick = chessGame.whiteJoystick;
+		} else throw new NullPointerException("Unknown side: " + side.name());
+		this.search = search;
+		this.executor = executor;
+		this.book = book;
+	}
+	
+	public Side getSide() {
+		return side;
+	}
+	
+	@Override
+	public void onTurnChanges(Side side) {
+		if(side != this.side) return;
+		// The game waits for our move, the chess-board holds still
+		Chessboard copy = null;
+		// The snapshot is there already, only a position in the book is copied for its legal moves
+		if(book != null && book.find(chessGame.getChessboardSnapshot().key) >= 0) {
+			copy = chessGame.getChessboardCopy();
+			int move = book.probe(copy, bookMoves);
+			if(move != 0) {
+				playingMove = move;
+				joystick.move(Coordinate2D.of(Move.from(move)), Coordinate2D.of(Move.to(move)));
+				return;
+			}
+		}
+		final Chessboard chessboard = copy != null ? copy : chessGame.getChessboardCopy();
+		executor.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				Search.Result result = search.search(chessboard);
+				if(result.move == 0) {
+					joystick.quit();
+					return;
+				}
+				playingMove = result.move;
+				joystick.move(Coordinate2D.of(Move.from(result.move)), Coordinate2D.of(Move.to(result.move)));
+			}
+		});
+	}
+	
+	@Override
+	public void onAscend(Coordinate2D coord) {
+		PieceType type = Move.getAscendType(playingMove);
+		joystick.ascendTo(type == null ? PieceType.QUEEN : type);
+	}
+	
+	@Override
+	public void onCanTranslocation(Coordinate2D coord) {
+		joystick.decideTranslocation(Move.is(playingMove, Move.TRANSLOCATION));
+	}
+	
+	@Override
+	public void onInvalidMove(Coordinate2D coord, Coordinate2D dest, Piece piece) {
+		// The rules and the move generator disagree, better give up than wait forever
+		joystick.quit();
+	}
+	
+	@Override
+	public void onChessboardUpdate(Map<Coordinate2D, Piece> chessboard) {}
+	
+	@Override
+	public void onGameover(Side side) {}
+	
+	@Override
+	public void onMessage(String message) {}
+
+}
@@ -0,0 +1,74 @@
+package alan.chessgame_f.engine;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.PieceType;
+
+/**
+ * Material and a little bit of placement, read straight from the bitboards.
+ */
+public final class Evaluation {
+	
+	/**
+	 * Indexed by {@link PieceType#ordinal()}. The king has no value, it's never taken, mate ends the game first.
+	 */
+	private final static int[] VALUES = new int[PieceType.values().length];
+	
+	/**
+	 * Bonus of standing on the square, from white's view. Knights and bishops like the center.
+	 */
+	private final static int[] CENTER = new int[64];
+	
+	static {
+		VALUES[PieceType.KING.ordinal()] = 0;
+		VALUES[PieceType.QUEEN.ordinal()] = 900;
+		VALUES[PieceType.ROOK.ordinal()] = 500;
+		VALUES[PieceType.BISHOP.ordinal()] = 330;
+		VALUES[PieceType.KNIGHT.ordinal()] = 320;
+		VALUES[PieceType.PAWN.ordinal()] = 100;
+		
+		for(int square = 0; square < 64; square++) {
+			int x = square & 7, y = square >>> 3;
+			int distance = Math.max(Math.abs(2 * x - 7), Math.abs(2 * y - 7)) / 2;
+			CENTER[square] = (3 - distance) * 10;
+		}
+	}
+	
+	private Evaluation() {}
+	
+	public static int value(PieceType type) {
+		return VALUES[type.ordinal()];
+	}
+	
+	/**
+	 * @return The score in centipawns, from the view of the side to move.
+	 */
+	public static int evaluate(Chessboard chessboard) {
+		int score = evaluate(chessboard, Side.WHITE) - evaluate(chessboard, Side.BLACK);
+		return chessboard.getTurn() == Side.WHITE ? score : -score;
+	}
+	
+	private static int evaluate(Chessboard chessboard, Side side) {
+		int score = 0;
+		score += Long.bitCount(chessboard.getBitboard(side, PieceType.QUEEN)) * VALUES[PieceType.QUEEN.ordinal()];
+		score += Long.bitCount(chessboard.getBitboard(side, PieceType.ROOK)) * VALUES[PieceType.ROOK.ordinal()];
+		score += centered(chessboard.getBitboard(side, PieceType.BISHOP), VALUES[PieceType.BISHOP.ordinal()]);
+		score += centered(chessboard.getBitboard(side, PieceType.KNIGHT), VALUES[PieceType.KNIGHT.ordinal()]);
+		for(long pawns = chessboard.getBitboard(side, PieceType.PAWN); pawns != 0; pawns &= pawns - 1) {
+			int y = Long.numberOfTrailingZeros(pawns) >>> 3;
+			// Pawns are worth more the closer they get to ascend
+			int advance = side == Side.WHITE ? y - 1 : 6 - y;
+			score += VALUES[PieceType.PAWN.ordinal()] + advance * advance * 2;
+		}
+		return score;
+	}
+	
+	private static int centered(long pieces, int value) {
+		int score = 0;
+		for(; pieces != 0; pieces &= pieces - 1) {
+			score += value + CENTER[Long.numberOfTrailingZeros(pieces)];
+		}
+		return score;
+	}
+
+}
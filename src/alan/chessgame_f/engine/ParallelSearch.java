@@ -0,0 +1,116 @@
+package alan.chessgame_f.engine;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.tablebase.Tablebase;
+
+/**
+ * Lazy SMP: every thread searches the same position with its own {@link Search}, and they only
+ * talk through the shared {@link TranspositionTable}. Half of the helpers start one ply deeper,
+ * so they fill the table ahead of the others. <br>
+ * The calling thread is the main worker, its limits decide when everyone stops. The deepest finished
+ * result wins, the main worker's on a tie.
+ */
+public final class ParallelSearch implements Searcher {
+	
+	private final Search main;
+	private final Search[] helpers;
+	private final TranspositionTable table;
+	private final ExecutorService executor;
+	
+	/**
+	 * @param threads How many threads search, the calling one included
+	 * @param maxDepth How deep to search at most, in plies
+	 * @param maxNodes How many nodes the main worker may search, 0 for no limit
+	 * @param maxMillis How long the search may take, 0 for no limit
+	 * @param table The table shared by the workers
+	 */
+	public ParallelSearch(int threads, int maxDepth, long maxNodes, long maxMillis, TranspositionTable table) {
+		this(threads, maxDepth, maxNodes, maxMillis, table, null);
+	}
+	
+	/**
+	 * @param tablebase Shared by the workers too, null for none
+	 */
+	public ParallelSearch(int threads, int maxDepth, long maxNodes, long maxMillis, TranspositionTable table, Tablebase tablebase) {
+		if(threads < 1) throw new IllegalArgumentException("At least one thread is needed: " + threads);
+		if(table == null) throw new NullPointerException("Lazy SMP needs a shared table");
+		this.table = table;
+		main = new Search(maxDepth, maxNodes, maxMillis, table, tablebase);
+		helpers = new Search[threads - 1];
+		for(int i=0;i<helpers.length;i++) {
+			// Stopped by the main worker only
+			helpers[i] = new Search(maxDepth, 0, 0, table, tablebase);
+		}
+		executor = helpers.length == 0 ? null : Executors.newFixedThreadPool(helpers.length, new ThreadFactory() {
+			
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "Lazy SMP helper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	@Override
+	public Search.Result search(final Chessboard chessboard) {
+		// Once for every thread, what the others store in this search must not look old
+		table.newSearch();
+		final AtomicBoolean stop = new AtomicBoolean();
+		final Search.Result[] results = new Search.Result[helpers.length];
+		final CountDownLatch done = new CountDownLatch(helpers.length);
+		for(int i=0;i<helpers.length;i++) {
+			final int index = i;
+			executor.execute(new Runnable() {
+				
+				@Override
+				public void run() {
+					try {
+						results[index] = helpers[index].search(chessboard, 1 + (index & 1), stop);
+					} finally {
+						done.countDown();
+					}
+				}
+			});
+		}
+		
+		Search.Result best = main.search(chessboard, 1, null);
+		stop.set(true);
+		try {
+			done.await();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return best;
+		}
+		
+		long nodes = best.nodes;
+		for (Search.Result result : results) {
+			if(result == null) continue;
+			nodes += result.nodes;
+			if(result.depth > best.depth && result.move != 0) best = result;
+		}
+		return new Search.Result(best.move, best.score, best.depth, nodes);
+	}
+	
+	public int getThreads() {
+		return helpers.length + 1;
+	}
+	
+	public TranspositionTable getTable() {
+		return table;
+	}
+	
+	/**
+	 * Stops the helper threads, the search can't be used after.
+	 */
+	public void shutdown() {
+		if(executor != null) executor.shutdownNow();
+	}
+
+}
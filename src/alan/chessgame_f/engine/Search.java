@@ -0,0 +1,292 @@
+package alan.chessgame_f.engine;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.chess.PieceType;
+import alan.chessgame_f.tablebase.Tablebase;
+
+/**
+ * Iterative deepening alpha-beta search over {@link Chessboard#generateLegalMoves(alan.chessgame_f.Side, int[])}. <br>
+ * Checkmate scores {@link #MATE}, and sooner is better. <br>
+ * With a {@link Tablebase}, positions with few pieces below the root are scored from it instead of searched. <br>
+ * One search runs at a time on an instance, reuse it for the next search to keep the buffers.
+ * A {@link TranspositionTable} can be shared by many searches at once.
+ */
+public final class Search implements Searcher {
+	
+	public final static int INFINITY = 1000000;
+	public final static int MATE = 100000;
+	
+	public final static int MAX_PLY = 64;
+	
+	/**
+	 * Scores beyond are mates. Mates from a tablebase can be further than {@link #MAX_PLY}.
+	 */
+	private final static int MATE_BOUND = MATE - 1024;
+	
+	private final static int CHECK_INTERVAL = 1023;
+	
+	private final int maxDepth;
+	private final long maxNodes;
+	private final long maxMillis;
+	private final TranspositionTable table;
+	private final Tablebase tablebase;
+	
+	private final int[][] moves = new int[MAX_PLY][Move.MAX_MOVES];
+	private final int[][] orders = new int[MAX_PLY][Move.MAX_MOVES];
+	
+	private long nodes;
+	private long deadline;
+	private boolean stopped;
+	private AtomicBoolean stop;
+	private int rootBest;
+	
+	/**
+	 * @param maxDepth How deep to search at most, in plies
+	 * @param maxNodes How many nodes may be searched, 0 for no limit
+	 * @param maxMillis How long the search may take, 0 for no limit
+	 */
+	public Search(int maxDepth, long maxNodes, long maxMillis) {
+		this(maxDepth, maxNodes, maxMillis, null);
+	}
+	
+	/**
+	 * @param maxDepth How deep to search at most, in plies
+	 * @param maxNodes How many nodes may be searched, 0 for no limit
+	 * @param maxMillis How long the search may take, 0 for no limit
+	 * @param table Where searched positions are remembered, null for none
+	 */
+	public Search(int maxDepth, long maxNodes, long maxMillis, TranspositionTable table) {
+		this(maxDepth, maxNodes, maxMillis, table, null);
+	}
+	
+	/**
+	 * @param tablebase Where positions with few pieces are looked up, null for none
+	 */
+	public Search(int maxDepth, long maxNodes, long maxMillis, TranspositionTable table, Tablebase tablebase) {
+		if(maxDepth < 1 || maxDepth >= MAX_PLY) throw new IllegalArgumentException("Depth out of range: " + maxDepth);
+		this.maxDepth = maxDepth;
+		this.maxNodes = maxNodes;
+		this.maxMillis = maxMillis;
+		this.table = table;
+		this.tablebase = tablebase;
+	}
+	
+	/**
+	 * Deepens one ply at a time until a limit is hit, the move of the last finished depth wins.
+	 *
+	 * @param chessboard The position, searched for {@link Chessboard#getTurn()}. It's not modified,
+	 * 		the search walks the tree on a copy with {@link Chessboard#makeMove(int)}.
+	 * @return The result, its move is 0 if there's no move at all
+	 */
+	@Override
+	public Result search(Chessboard chessboard) {
+		if(table != null) table.newSearch();
+		return search(chessboard, 1, null);
+	}
+	
+	/**
+	 * The table is not aged here, {@link ParallelSearch} does it once for all its threads.
+	 *
+	 * @param startDepth The first depth to search, helpers of {@link ParallelSearch} start at different ones
+	 * @param stop Stops the search when set, null for none
+	 */
+	Result search(Chessboard chessboard, int startDepth, AtomicBoolean stop) {
+		chessboard = chessboard.copy();
+		nodes = 0;
+		stopped = false;
+		this.stop = stop;
+		deadline = maxMillis > 0 ? System.currentTimeMillis() + maxMillis : Long.MAX_VALUE;
+		rootBest = 0;
+		
+		int bestMove = 0, bestScore = 0, depth = 0;
+		for(int d = Math.min(startDepth, maxDepth); d <= maxDepth; d++) {
+			int score = alphaBeta(chessboard, d, 0, -INFINITY, INFINITY);
+			if(stopped && depth > 0) break;
+			bestMove = rootBest;
+			bestScore = score;
+			depth = d;
+			// No point going deeper once the mate is found
+			if(stopped || Math.abs(score) > MATE_BOUND) break;
+		}
+		if(bestMove == 0 && chessboard.generateLegalMoves(chessboard.getTurn(), moves[0]) > 0) {
+			// Stopped before the first depth was done, anything is better than nothing
+			bestMove = moves[0][0];
+		}
+		return new Result(bestMove, bestScore, depth, nodes);
+	}
+	
+	private int alphaBeta(Chessboard chessboard, int depth, int ply, int alpha, int beta) {
+		if(tablebase != null && ply > 0) {
+			int value = tablebase.probe(chessboard);
+			if(value != Tablebase.UNKNOWN) {
+				nodes++;
+				if(Tablebase.isWin(value)) return MATE - ply - Tablebase.getPlies(value);
+				if(Tablebase.isLoss(value)) return -(MATE - ply - Tablebase.getPlies(value));
+				return 0;
+			}
+		}
+		if(depth <= 0 || ply >= MAX_PLY - 1) return quiescence(chessboard, ply, alpha, beta);
+		nodes++;
+		if((nodes & CHECK_INTERVAL) == 0) checkLimits();
+		
+		long key = chessboard.getKey();
+		int tableMove = 0;
+		if(table != null) {
+			long entry = table.probe(key);
+			if(entry != 0) {
+				tableMove = TranspositionTable.move(entry);
+				// The root has to search, it must come up with a move
+				if(ply > 0 && TranspositionTable.depth(entry) >= depth) {
+					int score = fromTable(TranspositionTable.score(entry), ply);
+					int bound = TranspositionTable.bound(entry);
+					if(bound == TranspositionTable.EXACT
+							|| bound == TranspositionTable.LOWER && score >= beta
+							|| bound == TranspositionTable.UPPER && score <= alpha) return score;
+				}
+			}
+		}
+		
+		int[] moves = this.moves[ply];
+		int count = chessboard.generateLegalMoves(chessboard.getTurn(), moves);
+		if(count == 0) return chessboard.isInCheck(chessboard.getTurn()) ? -(MATE - ply) : 0;
+		order(chessboard, moves, orders[ply], count, ply == 0 && rootBest != 0 ? rootBest : tableMove);
+		
+		int alphaOrigin = alpha;
+		int best = -INFINITY, bestMove = 0;
+		for(int i=0;i<count;i++) {
+			int move = next(moves, orders[ply], i, count);
+			long undo = chessboard.makeMove(move);
+			int score = -alphaBeta(chessboard, depth - 1, ply + 1, -beta, -alpha);
+			chessboard.unmakeMove(undo);
+			if(stopped) return best;
+			if(score > best) {
+				best = score;
+				bestMove = move;
+				if(ply == 0) rootBest = move;
+			}
+			if(score > alpha) alpha = score;
+			if(alpha >= beta) break;
+		}
+		if(table != null) {
+			int bound = best >= beta ? TranspositionTable.LOWER
+					: best > alphaOrigin ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+			table.store(key, bestMove, toTable(best, ply), depth, bound);
+		}
+		return best;
+	}
+	
+	/**
+	 * Mates are stored as distance from the position, not from the root.
+	 */
+	private static int toTable(int score, int ply) {
+		if(score > MATE_BOUND) return score + ply;
+		if(score < -MATE_BOUND) return score - ply;
+		return score;
+	}
+	
+	private static int fromTable(int score, int ply) {
+		if(score > MATE_BOUND) return score - ply;
+		if(score < -MATE_BOUND) return score + ply;
+		return score;
+	}
+	
+	/**
+	 * Only captures and ascends, until the position is quiet.
+	 */
+	private int quiescence(Chessboard chessboard, int ply, int alpha, int beta) {
+		nodes++;
+		if((nodes & CHECK_INTERVAL) == 0) checkLimits();
+		
+		int standPat = Evaluation.evaluate(chessboard);
+		if(standPat >= beta || ply >= MAX_PLY - 1) return standPat;
+		if(standPat > alpha) alpha = standPat;
+		
+		int[] moves = this.moves[ply];
+		int count = chessboard.generateMoves(chessboard.getTurn(), moves);
+		order(chessboard, moves, orders[ply], count, 0);
+		
+		for(int i=0;i<count;i++) {
+			int move = next(moves, orders[ply], i, count);
+			if(!Move.is(move, Move.CAPTURE | Move.ASCEND)) break; // Ordered, the quiet ones come last
+			if(!chessboard.isLegal(move)) continue;
+			long undo = chessboard.makeMove(move);
+			int score = -quiescence(chessboard, ply + 1, -beta, -alpha);
+			chessboard.unmakeMove(undo);
+			if(stopped) return alpha;
+			if(score > alpha) alpha = score;
+			if(alpha >= beta) break;
+		}
+		return alpha;
+	}
+	
+	/**
+	 * Scores the moves for ordering: the given first move, then captures by most valuable victim and
+	 * least valuable attacker, then ascends.
+	 */
+	private static void order(Chessboard chessboard, int[] moves, int[] orders, int count, int first) {
+		for(int i=0;i<count;i++) {
+			int move = moves[i];
+			int order = 0;
+			Piece victim = chessboard.getPiece(Move.to(move));
+			if(move == first) {
+				order = INFINITY;
+			} else if(Move.is(move, Move.CAPTURE)) {
+				int victimValue = victim == null ? Evaluation.value(PieceType.PAWN) : Evaluation.value(victim.getType());
+				order = 10000 + victimValue * 10 - Evaluation.value(chessboard.getPiece(Move.from(move)).getType()) / 10;
+			} else if(Move.is(move, Move.ASCEND)) {
+				order = 5000 + Evaluation.value(Move.getAscendType(move));
+			}
+			orders[i] = order;
+		}
+	}
+	
+	/**
+	 * Selection sort, one step at a time, since a cut-off makes sorting the rest a waste.
+	 */
+	private static int next(int[] moves, int[] orders, int index, int count) {
+		int best = index;
+		for(int i=index+1;i<count;i++) {
+			if(orders[i] > orders[best]) best = i;
+		}
+		int move = moves[best];
+		int order = orders[best];
+		moves[best] = moves[index];
+		orders[best] = orders[index];
+		moves[index] = move;
+		orders[index] = order;
+		return move;
+	}
+	
+	private void checkLimits() {
+		if(stop != null && stop.get()) stopped = true;
+		else if(maxNodes > 0 && nodes >= maxNodes) stopped = true;
+		else if(System.currentTimeMillis() >= deadline) stopped = true;
+	}
+	
+	public final static class Result {
+		
+		/**
+		 * Packed, see {@link Move}
+		 */
+		public final int move;
+		/**
+		 * Centipawns from the view of the side to move.
+		 */
+		public final int score;
+		public final int depth;
+		public final long nodes;
+		
+		Result(int move, int score, int depth, long nodes) {
+			this.move = move;
+			this.score = score;
+			this.depth = depth;
+			this.nodes = nodes;
+		}
+	
+	}
+
+}
@@ -0,0 +1,16 @@
+package alan.chessgame_f.engine;
+
+import alan.chessgame_f.Chessboard;
+
+/**
+ * What {@link EnginePlayer} asks for a move, see {@link Search} and {@link ParallelSearch}.
+ */
+public interface Searcher {
+	
+	/**
+	 * @param chessboard The position, searched for {@link Chessboard#getTurn()}. It's not modified.
+	 * @return The result, its move is 0 if there's no move at all
+	 */
+	public Search.Result search(Chessboard chessboard);
+
+}
@@ -0,0 +1,171 @@
+package alan.chessgame_f.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size hash table of searched positions, keyed by {@link alan.chessgame_f.Chessboard#getKey()}. <br>
+ * Many searches can probe and store at once without any lock: an entry is two longs, the key XOR the data
+ * and the data, so an entry torn by two writers just doesn't verify and counts as a miss. <br>
+ * Two entries share a bucket, and a store replaces the one that is shallower or from an older search.
+ *
+ * <pre>
+ * data bits  0-19 : move
+ * data bits 20-40 : score + 2^20
+ * data bits 41-47 : depth
+ * data bits 48-49 : bound
+ * data bits 50-57 : age
+ * </pre>
+ */
+public final class TranspositionTable {
+	
+	public final static int EXACT = 1;
+	/**
+	 * The score is at least this, the search was cut off.
+	 */
+	public final static int LOWER = 2;
+	/**
+	 * The score is at most this, no move raised alpha.
+	 */
+	public final static int UPPER = 3;
+	
+	private final static int ENTRY_BYTES = 16;
+	private final static int SCORE_OFFSET = 1 << 20;
+	
+	private final long[] table;
+	private final int bucketMask;
+	private volatile int age;
+	
+	private final LongAdder probes = new LongAdder();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder collisions = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	
+	/**
+	 * @param megabytes The size, rounded down to a power of two number of entries
+	 */
+	public TranspositionTable(int megabytes) {
+		if(megabytes < 1) throw new IllegalArgumentException("Size must be at least 1 MB: " + megabytes);
+		long entries = Long.highestOneBit((long) megabytes * 1024 * 1024 / ENTRY_BYTES);
+		entries = Math.min(entries, 1 << 27); // long[] can't hold more
+		table = new long[(int) entries * 2];
+		bucketMask = (int) (entries / 2 - 1);
+	}
+	
+	/**
+	 * Ages the entries stored so far, they are the first to be replaced. Called once when a search starts,
+	 * however many threads take part in it.
+	 */
+	public synchronized void newSearch() {
+		age = (age + 1) & 0xFF;
+	}
+	
+	/**
+	 * @return The data of the position, or 0 if it's not there
+	 */
+	public long probe(long key) {
+		probes.increment();
+		int bucket = bucket(key);
+		boolean occupied = false;
+		for(int i = bucket; i < bucket + 4; i += 2) {
+			long data = table[i + 1];
+			if(data == 0) continue;
+			if((table[i] ^ data) == key) {
+				hits.increment();
+				return data;
+			}
+			occupied = true;
+		}
+		if(occupied) collisions.increment();
+		return 0;
+	}
+	
+	/**
+	 * @param score From the view of the side to move, see {@link Search}
+	 * @param bound {@link #EXACT}, {@link #LOWER} or {@link #UPPER}
+	 */
+	public void store(long key, int move, int score, int depth, int bound) {
+		stores.increment();
+		int age = this.age;
+		long data = (move & 0xFFFFFL)
+				| ((long) (score + SCORE_OFFSET) & 0x1FFFFFL) << 20
+				| ((long) depth & 0x7F) << 41
+				| ((long) bound & 3) << 48
+				| ((long) age & 0xFF) << 50;
+		int bucket = bucket(key);
+		int replace = bucket;
+		int replaceWorth = Integer.MAX_VALUE;
+		for(int i = bucket; i < bucket + 4; i += 2) {
+			long old = table[i + 1];
+			if(old == 0 || (table[i] ^ old) == key) {
+				// Keep the old move if the new search has none
+				if(move == 0 && old != 0) data |= old & 0xFFFFFL;
+				replace = i;
+				break;
+			}
+			// Deep entries of this search are worth keeping, entries of old searches are not
+			int worth = depth(old) - (age(old) == age ? 0 : 256);
+			if(worth < replaceWorth) {
+				replaceWorth = worth;
+				replace = i;
+			}
+		}
+		table[replace] = key ^ data;
+		table[replace + 1] = data;
+	}
+	
+	public void clear() {
+		Arrays.fill(table, 0);
+	}
+	
+	/**
+	 * @return How many entries the table holds
+	 */
+	public int getCapacity() {
+		return table.length / 2;
+	}
+	
+	public long getProbes() {
+		return probes.sum();
+	}
+	
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	/**
+	 * @return How many probes missed while another position held the bucket
+	 */
+	public long getCollisions() {
+		return collisions.sum();
+	}
+	
+	public long getStores() {
+		return stores.sum();
+	}
+	
+	private int bucket(long key) {
+		return ((int) (key ^ (key >>> 32)) & bucketMask) << 2;
+	}
+	
+	public static int move(long data) {
+		return (int) (data & 0xFFFFF);
+	}
+	
+	public static int score(long data) {
+		return (int) ((data >>> 20) & 0x1FFFFF) - SCORE_OFFSET;
+	}
+	
+	public static int depth(long data) {
+		return (int) ((data >>> 41) & 0x7F);
+	}
+	
+	public static int bound(long data) {
+		return (int) ((data >>> 48) & 3);
+	}
+	
+	private static int age(long data) {
+		return (int) ((data >>> 50) & 0xFF);
+	}
+
+}
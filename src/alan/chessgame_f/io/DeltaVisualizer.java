@@ -0,0 +1,20 @@
+package alan.chessgame_f.io;
+
+import alan.chessgame_f.BoardDelta;
+import alan.chessgame_f.ChessGame;
+
+/**
+ * A visualizer that takes what changed instead of the whole chess-board,
+ * {@link #onChessboardUpdate(java.util.Map)} is not called on it.
+ */
+public interface DeltaVisualizer extends Visualizer {
+	
+	/**
+	 * When pieces are moved. The first one is a resync, after that each one follows the one before,
+	 * see {@link BoardDelta#since}. Ask {@link ChessGame#resync(Visualizer)} for a full one any time.
+	 *
+	 * @param delta The squares changed, and the chess-board after
+	 */
+	public void onChessboardDelta(BoardDelta delta);
+
+}
@@ -2,10 +2,15 @@ package alan.chessgame_f.io;
 
 import java.util.Map;
 
+import alan.chessgame_f.ChessGame;
 import alan.chessgame_f.Side;
 import alan.chessgame_f.chess.Piece;
 import alan.chessgame_f.util.Coordinate2D;
 
+/**
+ * The calls come one at a time and in order, but not on the game loop, see {@link ChessGame#ChessGame(int, String, java.util.concurrent.Executor)}.
+ * A slow visualizer only holds up itself.
+ */
 public interface Visualizer {
 	
 	/**
@@ -32,10 +37,32 @@ public interface Visualizer {
 	/**
 	 * When the game is over, as one side wins the game or quit the game.
 	 * 
-	 * @param side The side that win the game.
+	 * @param side The side that win the game, null if nobody wins.
 	 */
 	public void onGameover(Side side);
 	
+	/**
+	 * When a king is attacked after a move, but can still get away. Does nothing unless overridden,
+	 * like the checkmate and the stalemate, the visualizers from before them still work.
+	 * 
+	 * @param side The side that is in check.
+	 */
+	public default void onCheck(Side side) {}
+	
+	/**
+	 * When a king is attacked and there's no move to save it. The game is over right after.
+	 * 
+	 * @param side The side that is checkmated.
+	 */
+	public default void onCheckmate(Side side) {}
+	
+	/**
+	 * When the side to move has no legal move but isn't in check. The game is over right after, nobody wins.
+	 * 
+	 * @param side The side that can't move.
+	 */
+	public default void onStalemate(Side side) {}
+	
 	/**
 	 * When the competitor send a message.
 	 * @param message The message
@@ -0,0 +1,96 @@
+package alan.chessgame_f.record;
+
+import java.util.Arrays;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Fen;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+
+/**
+ * The moves of one game, 16 bits each (see {@link Move#compact(int)}), and how it ended. <br>
+ * Games start from the standard startup, unless there's a FEN.
+ */
+public final class GameRecord {
+	
+	public final static int UNKNOWN = 0;
+	public final static int WHITE_WINS = 1;
+	public final static int BLACK_WINS = 2;
+	public final static int DRAW = 3;
+	
+	private final String fen;
+	private final short[] moves;
+	private final int result;
+	
+	/**
+	 * @param moves The moves, only the first plies are taken
+	 * @param result {@link #UNKNOWN}, {@link #WHITE_WINS}, {@link #BLACK_WINS} or {@link #DRAW}
+	 */
+	public GameRecord(short[] moves, int plies, int result) {
+		this(null, moves, plies, result);
+	}
+	
+	/**
+	 * @param fen The position the game starts from, null for the standard startup
+	 */
+	public GameRecord(String fen, short[] moves, int plies, int result) {
+		if(result < UNKNOWN || result > DRAW) throw new IllegalArgumentException("Unknown result: " + result);
+		this.fen = fen;
+		this.moves = Arrays.copyOf(moves, plies);
+		this.result = result;
+	}
+	
+	/**
+	 * @return The position the game starts from, null for the standard startup
+	 */
+	public String getFen() {
+		return fen;
+	}
+	
+	public int getResult() {
+		return result;
+	}
+	
+	public int getPlies() {
+		return moves.length;
+	}
+	
+	/**
+	 * @return The move in 16 bits, see {@link Chessboard#expandMove(int)}
+	 */
+	public int getMove(int ply) {
+		return moves[ply] & 0xFFFF;
+	}
+	
+	public short[] getMoves() {
+		return moves.clone();
+	}
+	
+	/**
+	 * @return A new chess-board at the position the game starts from
+	 */
+	public Chessboard createChessboard() {
+		if(fen != null) return Fen.parse(fen);
+		Chessboard chessboard = new Chessboard();
+		Chessboard.standardStartup(chessboard);
+		return chessboard;
+	}
+	
+	/**
+	 * Plays the whole game on the chess-board, which should be at the start, see {@link #createChessboard()}.
+	 */
+	public void replay(Chessboard chessboard) {
+		for (short move : moves) {
+			chessboard.play(chessboard.expandMove(move));
+		}
+	}
+	
+	/**
+	 * @param winner The side that won, null if nobody wins
+	 */
+	public static int result(Side winner) {
+		if(winner == null) return DRAW;
+		return winner == Side.WHITE ? WHITE_WINS : BLACK_WINS;
+	}
+
+}
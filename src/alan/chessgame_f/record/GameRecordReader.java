@@ -0,0 +1,81 @@
+package alan.chessgame_f.record;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams game records back from a channel, one game at a time, see {@link GameRecordWriter} for the format.
+ */
+public final class GameRecordReader implements Closeable {
+	
+	private final ReadableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(GameRecordWriter.BUFFER_SIZE);
+	private short[] moves = new short[256];
+	
+	public GameRecordReader(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.READ));
+	}
+	
+	/**
+	 * @param channel Closed along with the reader, or right away if it's not a game record file
+	 */
+	public GameRecordReader(ReadableByteChannel channel) throws IOException {
+		this.channel = channel;
+		buffer.flip();
+		try {
+			if(!fill(4)) throw new EOFException("Not a game record file, it's empty");
+			int magic = buffer.getInt();
+			if(magic != GameRecordWriter.MAGIC) {
+				throw new IOException("Not a game record file: " + Integer.toHexString(magic));
+			}
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+	
+	/**
+	 * @return The next game, or null at the end
+	 */
+	public GameRecord read() throws IOException {
+		if(!fill(1)) return null;
+		int result = buffer.get();
+		if(result < GameRecord.UNKNOWN || result > GameRecord.DRAW) throw new IOException("Unknown result: " + result);
+		if(!fill(2)) throw new EOFException("Game cut off");
+		int plies = buffer.getShort() & 0xFFFF;
+		if(moves.length < plies) moves = new short[Math.max(plies, moves.length * 2)];
+		for(int ply = 0; ply < plies; ply++) {
+			if(!fill(2)) throw new EOFException("Game cut off after " + ply + " plies");
+			moves[ply] = buffer.getShort();
+		}
+		return new GameRecord(moves, plies, result);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+	
+	/**
+	 * @return Whether there are the bytes, false at the end of the channel
+	 */
+	private boolean fill(int bytes) throws IOException {
+		if(buffer.remaining() >= bytes) return true;
+		buffer.compact();
+		try {
+			while(buffer.position() < bytes) {
+				if(channel.read(buffer) < 0) return false;
+			}
+		} finally {
+			buffer.flip();
+		}
+		return true;
+	}
+
+}
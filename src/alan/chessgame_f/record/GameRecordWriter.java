@@ -0,0 +1,100 @@
+package alan.chessgame_f.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams game records into a channel through one direct buffer. <br>
+ * A game costs 3 bytes plus 2 bytes a ply, so a million games of 80 plies fit in about 160 MB.
+ *
+ * <pre>
+ * file : MAGIC, then the games until the end
+ * game : result (1 byte), plies (2 bytes), then the moves (2 bytes each)
+ * </pre>
+ *
+ * Everything is big-endian. Only games from the standard startup can be written.
+ */
+public final class GameRecordWriter implements Closeable {
+	
+	/**
+	 * "CGR1"
+	 */
+	public final static int MAGIC = 0x43475231;
+	
+	/**
+	 * Most plies a game can have, the count is stored in 16 bits.
+	 */
+	public final static int MAX_PLIES = 0xFFFF;
+	
+	final static int BUFFER_SIZE = 1 << 16;
+	
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	private long games;
+	
+	/**
+	 * Creates the file, or truncates it.
+	 */
+	public GameRecordWriter(Path path) throws IOException {
+		this(FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING));
+	}
+	
+	/**
+	 * @param channel Closed along with the writer
+	 */
+	public GameRecordWriter(WritableByteChannel channel) {
+		this.channel = channel;
+		buffer.putInt(MAGIC);
+	}
+	
+	public void write(GameRecord record) throws IOException {
+		if(record.getFen() != null) throw new IllegalArgumentException("Game doesn't start from the standard startup");
+		int plies = record.getPlies();
+		if(plies > MAX_PLIES) throw new IllegalArgumentException("Too many plies: " + plies);
+		if(buffer.remaining() < 3) drain();
+		buffer.put((byte) record.getResult());
+		buffer.putShort((short) plies);
+		for(int ply = 0; ply < plies; ply++) {
+			if(buffer.remaining() < 2) drain();
+			buffer.putShort((short) record.getMove(ply));
+		}
+		games++;
+	}
+	
+	/**
+	 * @return How many games are written so far
+	 */
+	public long getGames() {
+		return games;
+	}
+	
+	/**
+	 * Hands everything buffered to the channel.
+	 */
+	public void flush() throws IOException {
+		drain();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			drain();
+		} finally {
+			channel.close();
+		}
+	}
+	
+	private void drain() throws IOException {
+		buffer.flip();
+		while(buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+}
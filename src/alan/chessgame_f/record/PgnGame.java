@@ -0,0 +1,90 @@
+package alan.chessgame_f.record;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Fen;
+import alan.chessgame_f.chess.Move;
+
+/**
+ * One game as read from PGN: the tags, the moves of the main line in SAN and the result token. <br>
+ * Nothing is resolved until {@link #toRecord()}, so skipping through a database stays cheap.
+ */
+public final class PgnGame {
+	
+	private final Map<String, String> tags;
+	private final List<String> moves;
+	private final String result;
+	
+	PgnGame(Map<String, String> tags, List<String> moves, String result) {
+		this.tags = Collections.unmodifiableMap(tags);
+		this.moves = Collections.unmodifiableList(moves);
+		this.result = result;
+	}
+	
+	/**
+	 * @return The value, or null if the tag isn't there
+	 */
+	public String getTag(String name) {
+		return tags.get(name);
+	}
+	
+	/**
+	 * @return The tags in the order they were read
+	 */
+	public Map<String, String> getTags() {
+		return tags;
+	}
+	
+	public List<String> getMoves() {
+		return moves;
+	}
+	
+	/**
+	 * @return "1-0", "0-1", "1/2-1/2" or "*"
+	 */
+	public String getResult() {
+		return result;
+	}
+	
+	/**
+	 * Resolves the moves from the standard startup, or the FEN tag if there is one,
+	 * see {@link San#parse(Chessboard, CharSequence)}.
+	 *
+	 * @throws IllegalArgumentException If a move isn't legal, or the FEN isn't valid
+	 */
+	public GameRecord toRecord() {
+		String fen = tags.get("FEN");
+		Chessboard chessboard = fen == null ? new Chessboard() : Fen.parse(fen);
+		if(fen == null) Chessboard.standardStartup(chessboard);
+		short[] compact = new short[moves.size()];
+		for(int ply = 0; ply < compact.length; ply++) {
+			int move = San.parse(chessboard, moves.get(ply));
+			compact[ply] = Move.compact(move);
+			chessboard.play(move);
+		}
+		return new GameRecord(fen, compact, compact.length, toResult(result));
+	}
+	
+	/**
+	 * @return The result of {@link GameRecord} for the token, {@link GameRecord#UNKNOWN} for "*" or anything else
+	 */
+	public static int toResult(String token) {
+		if("1-0".equals(token)) return GameRecord.WHITE_WINS;
+		if("0-1".equals(token)) return GameRecord.BLACK_WINS;
+		if("1/2-1/2".equals(token)) return GameRecord.DRAW;
+		return GameRecord.UNKNOWN;
+	}
+	
+	static String toToken(int result) {
+		switch(result) {
+		case GameRecord.WHITE_WINS: return "1-0";
+		case GameRecord.BLACK_WINS: return "0-1";
+		case GameRecord.DRAW: return "1/2-1/2";
+		default: return "*";
+		}
+	}
+
+}
@@ -0,0 +1,205 @@
+package alan.chessgame_f.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads PGN one game at a time from a memory-mapped file. <br>
+ * The file is mapped a window at a time and the tokens are cut straight from the mapped bytes,
+ * so a database of many GB never sits in the heap. Comments, variations, NAGs and move numbers are skipped,
+ * only the main line is kept.
+ */
+public final class PgnReader implements Closeable {
+	
+	private final static long WINDOW_SIZE = 64L << 20;
+	
+	private final FileChannel channel;
+	private final long size;
+	private MappedByteBuffer window;
+	private long windowStart;
+	private long position;
+	
+	private final StringBuilder token = new StringBuilder(32);
+	private byte[] value = new byte[64];
+	private long games;
+	
+	public PgnReader(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		size = channel.size();
+	}
+	
+	/**
+	 * @return The next game, or null at the end of the file
+	 */
+	public PgnGame read() throws IOException {
+		Map<String, String> tags = new LinkedHashMap<>();
+		List<String> moves = new ArrayList<>();
+		for (;;) {
+			int c = skipSpaces();
+			if(c < 0) {
+				if(tags.isEmpty() && moves.isEmpty()) return null;
+				// The file ends without a result
+				return game(tags, moves, "*");
+			}
+			if(c == '[') {
+				if(!moves.isEmpty()) {
+					// A new game starts without the result of the last one
+					return game(tags, moves, "*");
+				}
+				position++;
+				readTag(tags);
+			} else if(c == '{') {
+				skipUntil('}');
+			} else if(c == ';') {
+				skipUntil('\n');
+			} else if(c == '(') {
+				skipVariation();
+			} else if(c == '$') {
+				position++;
+				readSymbol();
+			} else if(c == '*') {
+				position++;
+				return game(tags, moves, "*");
+			} else {
+				readSymbol();
+				if(token.length() == 0) {
+					// Something PGN doesn't know, e.g. a stray ')'
+					position++;
+					continue;
+				}
+				if(isResult(token)) return game(tags, moves, token.toString());
+				// Move numbers, their dots are skipped as spaces
+				if(!isNumber(token)) moves.add(token.toString());
+			}
+		}
+	}
+	
+	/**
+	 * @return How many games were read so far
+	 */
+	public long getGames() {
+		return games;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+	
+	private PgnGame game(Map<String, String> tags, List<String> moves, String result) {
+		games++;
+		return new PgnGame(tags, moves, result);
+	}
+	
+	private void readTag(Map<String, String> tags) throws IOException {
+		skipSpaces();
+		readSymbol();
+		String name = token.toString();
+		int c = skipSpaces();
+		int length = 0;
+		if(c == '"') {
+			position++;
+			for(c = next(); c >= 0 && c != '"'; c = next()) {
+				if(c == '\\') c = next();
+				if(c < 0) break;
+				if(length == value.length) value = Arrays.copyOf(value, length * 2);
+				value[length++] = (byte) c;
+			}
+		}
+		skipUntil(']');
+		// Tag values may be UTF-8, e.g. player names
+		tags.put(name, new String(value, 0, length, StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Reads letters, digits and the marks SAN and results use into the token.
+	 */
+	private void readSymbol() throws IOException {
+		token.setLength(0);
+		for (int c = peek(); c >= 0; c = peek()) {
+			if(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+					|| c == '_' || c == '+' || c == '#' || c == '=' || c == ':' || c == '-' || c == '/'
+					|| c == '!' || c == '?') {
+				token.append((char) c);
+				position++;
+			} else break;
+		}
+	}
+	
+	private void skipVariation() throws IOException {
+		int depth = 0;
+		for (int c = next(); c >= 0; c = next()) {
+			if(c == '(') depth++;
+			else if(c == ')' && --depth == 0) return;
+			else if(c == '{') skipUntil('}');
+			else if(c == ';') skipUntil('\n');
+		}
+	}
+	
+	private void skipUntil(int end) throws IOException {
+		for (int c = next(); c >= 0 && c != end; c = next());
+	}
+	
+	/**
+	 * Skips spaces and escaped lines ("%" at the start of a line).
+	 *
+	 * @return The next byte, or -1 at the end
+	 */
+	private int skipSpaces() throws IOException {
+		for (;;) {
+			int c = peek();
+			if(c == ' ' || c == '\t' || c == '\r' || c == '\n' || c == '.') {
+				position++;
+			} else if(c == '%' && (position == 0 || byteAt(position - 1) == '\n')) {
+				skipUntil('\n');
+			} else return c;
+		}
+	}
+	
+	private int next() throws IOException {
+		int c = peek();
+		if(c >= 0) position++;
+		return c;
+	}
+	
+	private int peek() throws IOException {
+		return byteAt(position);
+	}
+	
+	/**
+	 * Maps the window holding the position if it's not mapped yet.
+	 */
+	private int byteAt(long position) throws IOException {
+		if(position >= size) return -1;
+		if(window == null || position < windowStart || position >= windowStart + window.limit()) {
+			windowStart = position;
+			window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, size - position));
+		}
+		return window.get((int) (position - windowStart)) & 0xFF;
+	}
+	
+	private static boolean isNumber(CharSequence token) {
+		for(int i = 0; i < token.length(); i++) {
+			if(!Character.isDigit(token.charAt(i))) return false;
+		}
+		return true;
+	}
+	
+	private static boolean isResult(CharSequence token) {
+		int length = token.length();
+		if(length == 3) return "1-0".contentEquals(token) || "0-1".contentEquals(token);
+		return length == 7 && "1/2-1/2".contentEquals(token);
+	}
+
+}
@@ -0,0 +1,118 @@
+package alan.chessgame_f.record;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Map;
+
+import alan.chessgame_f.ChessGame;
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Side;
+
+/**
+ * Writes games as PGN, the seven tag roster first, then the moves in SAN wrapped at 80 columns.
+ */
+public final class PgnWriter implements Closeable {
+	
+	private final static String[] ROSTER = {"Event", "Site", "Date", "Round", "White", "Black", "Result"};
+	private final static int LINE_LENGTH = 79;
+	
+	private final Writer writer;
+	private final StringBuilder line = new StringBuilder(LINE_LENGTH + 16);
+	
+	/**
+	 * @param writer Better be buffered, it's closed along with this
+	 */
+	public PgnWriter(Writer writer) {
+		this.writer = writer;
+	}
+	
+	/**
+	 * Writes the moves played so far, call it when the game is over.
+	 */
+	public void write(ChessGame chessGame, Map<String, String> tags) throws IOException {
+		write(chessGame.getRecord(), tags);
+	}
+	
+	public void write(GameRecord record) throws IOException {
+		write(record, Collections.<String, String>emptyMap());
+	}
+	
+	/**
+	 * @param tags Tags to write, the roster tags that are missing are written as "?".
+	 * 		The result and the start position come from the record.
+	 */
+	public void write(GameRecord record, Map<String, String> tags) throws IOException {
+		String result = PgnGame.toToken(record.getResult());
+		for (String name : ROSTER) {
+			String value = name.equals("Result") ? result : tags.get(name);
+			writeTag(name, value == null ? "?" : value);
+		}
+		if(record.getFen() != null) {
+			writeTag("SetUp", "1");
+			writeTag("FEN", record.getFen());
+		}
+		for (Map.Entry<String, String> tag : tags.entrySet()) {
+			if(!isRoster(tag.getKey()) && !tag.getKey().equals("SetUp") && !tag.getKey().equals("FEN")) {
+				writeTag(tag.getKey(), tag.getValue());
+			}
+		}
+		writer.write('\n');
+		
+		Chessboard chessboard = record.createChessboard();
+		line.setLength(0);
+		// Counted as if white moved first, a game starting with black begins with "1..."
+		int first = chessboard.getTurn() == Side.BLACK ? 1 : 0;
+		for(int ply = 0; ply < record.getPlies(); ply++) {
+			int move = chessboard.expandMove(record.getMove(ply));
+			String san = San.toString(chessboard, move);
+			int half = ply + first;
+			// The number stays on the line of its move
+			if((half & 1) == 0) {
+				append((half / 2 + 1) + ". " + san);
+			} else if(ply == 0) {
+				append("1... " + san);
+			} else append(san);
+			chessboard.play(move);
+		}
+		append(result);
+		writer.write(line.toString());
+		writer.write("\n\n");
+	}
+	
+	public void flush() throws IOException {
+		writer.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+	
+	private void append(String token) throws IOException {
+		if(line.length() > 0 && line.length() + 1 + token.length() > LINE_LENGTH) {
+			writer.write(line.toString());
+			writer.write('\n');
+			line.setLength(0);
+		}
+		if(line.length() > 0) line.append(' ');
+		line.append(token);
+	}
+	
+	private void writeTag(String name, String value) throws IOException {
+		writer.write('[');
+		writer.write(name);
+		writer.write(" \"");
+		writer.write(value.replace("\\", "\\\\").replace("\"", "\\\""));
+		writer.write("\"]\n");
+	}
+	
+	private static boolean isRoster(String name) {
+		for (String roster : ROSTER) {
+			if(roster.equals(name)) return true;
+		}
+		return false;
+	}
+
+}
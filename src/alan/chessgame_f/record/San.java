@@ -0,0 +1,191 @@
+package alan.chessgame_f.record;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.chess.PieceType;
+
+/**
+ * Standard algebraic notation, e.g. "Nf3", "exd5", "e8=Q+", resolved with {@link Piece#isMoveValid}. <br>
+ * "O-O" and "O-O-O" are translocations along the rank, the rook stops on the king's h-side or a-side,
+ * which ends up the same as castling. Translocations along a file have no notation.
+ */
+public final class San {
+	
+	private final static char[] PIECE_CHARS = new char[PieceType.values().length];
+	
+	static {
+		PIECE_CHARS[PieceType.KING.ordinal()] = 'K';
+		PIECE_CHARS[PieceType.QUEEN.ordinal()] = 'Q';
+		PIECE_CHARS[PieceType.KNIGHT.ordinal()] = 'N';
+		PIECE_CHARS[PieceType.ROOK.ordinal()] = 'R';
+		PIECE_CHARS[PieceType.PAWN.ordinal()] = 'P';
+		PIECE_CHARS[PieceType.BISHOP.ordinal()] = 'B';
+	}
+	
+	private San() {}
+	
+	/**
+	 * @param chessboard The position before the move, the side to move is {@link Chessboard#getTurn()}
+	 * @return The packed move, see {@link Move}
+	 * @throws IllegalArgumentException If it's not a legal move of the position, or it's ambiguous
+	 */
+	public static int parse(Chessboard chessboard, CharSequence san) {
+		Side side = chessboard.getTurn();
+		int end = san.length();
+		// Check marks and annotations tell nothing
+		while(end > 0 && "+#!?".indexOf(san.charAt(end - 1)) >= 0) end--;
+		if(end == 0) throw new IllegalArgumentException("Empty move: " + san);
+		
+		if(san.charAt(0) == 'O' || san.charAt(0) == '0') {
+			if(end == 3) return parseTranslocation(chessboard, side, 1, san);
+			if(end == 5) return parseTranslocation(chessboard, side, -1, san);
+			throw new IllegalArgumentException("Unknown move: " + san);
+		}
+		
+		int index = 0;
+		PieceType type = toType(san.charAt(0));
+		if(type == null) type = PieceType.PAWN;
+		else index++;
+		
+		PieceType ascendType = null;
+		if(end >= 2 && san.charAt(end - 2) == '=') {
+			ascendType = toType(san.charAt(end - 1));
+			if(ascendType == null || ascendType == PieceType.KING || ascendType == PieceType.PAWN) {
+				throw new IllegalArgumentException("Can't ascend to " + san.charAt(end - 1) + ": " + san);
+			}
+			end -= 2;
+		} else if(type == PieceType.PAWN && end >= 1 && toType(san.charAt(end - 1)) != null) {
+			// Some write "e8Q"
+			ascendType = toType(san.charAt(end - 1));
+			end--;
+		}
+		if(end - index < 2) throw new IllegalArgumentException("Unknown move: " + san);
+		int x = san.charAt(end - 2) - 'a', y = san.charAt(end - 1) - '1';
+		if(x < 0 || x > 7 || y < 0 || y > 7) throw new IllegalArgumentException("Unknown square: " + san);
+		int to = Chessboard.square(x, y);
+		
+		// What's left between the piece and the destination is disambiguation and capture
+		int fromX = -1, fromY = -1;
+		for(int i = index; i < end - 2; i++) {
+			char c = san.charAt(i);
+			if(c >= 'a' && c <= 'h') fromX = c - 'a';
+			else if(c >= '1' && c <= '8') fromY = c - '1';
+			else if(c != 'x' && c != ':' && c != '-') throw new IllegalArgumentException("Unknown move: " + san);
+		}
+		
+		int found = 0, move = 0;
+		for(long pieces = chessboard.getBitboard(side, type); pieces != 0; pieces &= pieces - 1) {
+			int from = Long.numberOfTrailingZeros(pieces);
+			if(fromX >= 0 && (from & 7) != fromX || fromY >= 0 && (from >>> 3) != fromY) continue;
+			if(!chessboard.getPiece(from).isMoveValid(chessboard, from, to)) continue;
+			int candidate = chessboard.expandMove(Move.of(from, to, 0));
+			if(!chessboard.isLegal(candidate)) continue;
+			found++;
+			move = candidate;
+		}
+		if(found == 0) throw new IllegalArgumentException("Not a legal move: " + san);
+		if(found > 1) throw new IllegalArgumentException("Ambiguous move: " + san);
+		
+		boolean ascend = type == PieceType.PAWN && (y == 0 || y == 7);
+		if(ascend != (ascendType != null)) throw new IllegalArgumentException("Ascend type missing or misplaced: " + san);
+		if(ascend) move = Move.ascend(Move.from(move), to, ascendType, move & ~0x7FFF);
+		return move;
+	}
+	
+	/**
+	 * @param direction 1 if the king jumps towards the h-file, -1 towards the a-file
+	 */
+	private static int parseTranslocation(Chessboard chessboard, Side side, int direction, CharSequence san) {
+		long king = chessboard.getBitboard(side, PieceType.KING);
+		if(king == 0 || chessboard.isTranslocated(side)) throw new IllegalArgumentException("Can't translocate: " + san);
+		int kingSquare = Long.numberOfTrailingZeros(king);
+		int kingX = kingSquare & 7;
+		int to = kingSquare + direction;
+		if(kingX + direction < 0 || kingX + direction > 7 || kingX + direction * 2 < 0 || kingX + direction * 2 > 7) {
+			throw new IllegalArgumentException("Can't translocate: " + san);
+		}
+		// The nearest rook on the side, the rest are blocked by it
+		for(int x = kingX + direction * 2; x >= 0 && x < 8; x += direction) {
+			int from = (kingSquare & ~7) | x;
+			Piece piece = chessboard.getPiece(from);
+			if(piece == null) continue;
+			if(piece.side != side || piece.getType() != PieceType.ROOK) break;
+			if(!piece.isMoveValid(chessboard, from, to)) break;
+			int move = Move.of(from, to, Move.TRANSLOCATION);
+			if(!chessboard.isLegal(move)) break;
+			return move;
+		}
+		throw new IllegalArgumentException("Can't translocate: " + san);
+	}
+	
+	/**
+	 * @param chessboard The position before the move
+	 * @param move A legal move of the position
+	 * @return The move in SAN, with "+" or "#" if it checks or mates
+	 */
+	public static String toString(Chessboard chessboard, int move) {
+		int from = Move.from(move), to = Move.to(move);
+		Piece piece = chessboard.getPiece(from);
+		StringBuilder stringBuilder = new StringBuilder(8);
+		if(Move.is(move, Move.TRANSLOCATION)) {
+			if((from >>> 3) != (to >>> 3)) throw new IllegalArgumentException("No notation for translocation " + Move.toString(move));
+			stringBuilder.append(from > to ? "O-O" : "O-O-O");
+		} else {
+			String coordinate = Move.toString(move);
+			boolean capture = chessboard.getPiece(to) != null || Move.is(move, Move.EN_PASSANT);
+			if(piece.getType() == PieceType.PAWN) {
+				if(capture) stringBuilder.append(coordinate.charAt(0)).append('x');
+			} else {
+				stringBuilder.append(PIECE_CHARS[piece.getType().ordinal()]);
+				appendDisambiguation(stringBuilder, chessboard, piece, from, to, coordinate);
+				if(capture) stringBuilder.append('x');
+			}
+			stringBuilder.append(coordinate, 2, 4);
+			PieceType ascendType = Move.getAscendType(move);
+			if(ascendType != null) stringBuilder.append('=').append(PIECE_CHARS[ascendType.ordinal()]);
+		}
+		
+		long undo = chessboard.makeMove(move);
+		Side opponent = chessboard.getTurn();
+		if(chessboard.isInCheck(opponent)) stringBuilder.append(chessboard.hasLegalMoves(opponent) ? '+' : '#');
+		chessboard.unmakeMove(undo);
+		return stringBuilder.toString();
+	}
+	
+	private static void appendDisambiguation(
+			StringBuilder stringBuilder, Chessboard chessboard, Piece piece, int from, int to, String coordinate) {
+		boolean ambiguous = false, sameFile = false, sameRank = false;
+		for(long others = chessboard.getBitboard(piece.side, piece.getType()) & ~(1L << from); others != 0; others &= others - 1) {
+			int other = Long.numberOfTrailingZeros(others);
+			if(!chessboard.getPiece(other).isMoveValid(chessboard, other, to)) continue;
+			if(!chessboard.isLegal(chessboard.expandMove(Move.of(other, to, 0)))) continue;
+			ambiguous = true;
+			if((other & 7) == (from & 7)) sameFile = true;
+			if((other >>> 3) == (from >>> 3)) sameRank = true;
+		}
+		if(!ambiguous) return;
+		if(!sameFile) {
+			stringBuilder.append(coordinate.charAt(0));
+		} else if(!sameRank) {
+			stringBuilder.append(coordinate.charAt(1));
+		} else stringBuilder.append(coordinate, 0, 2);
+	}
+	
+	/**
+	 * @return The type of the letter, or null if it's not a piece letter
+	 */
+	private static PieceType toType(char c) {
+		switch(c) {
+		case 'K': return PieceType.KING;
+		case 'Q': return PieceType.QUEEN;
+		case 'N': return PieceType.KNIGHT;
+		case 'R': return PieceType.ROOK;
+		case 'B': return PieceType.BISHOP;
+		case 'P': return PieceType.PAWN;
+		default: return null;
+		}
+	}
+
+}
@@ -0,0 +1,56 @@
+package alan.chessgame_f.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Direct buffers of one size, cut from bigger slabs so many buffers take one native allocation. <br>
+ * A connection only holds one while it has bytes half read or half written, so the memory goes with
+ * the busy connections rather than all of them. Not thread-safe, it belongs to the selector thread.
+ */
+final class BufferPool {
+	
+	private final int bufferSize;
+	private final int buffersPerSlab;
+	private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+	private int allocated;
+	
+	BufferPool(int bufferSize, int buffersPerSlab) {
+		this.bufferSize = bufferSize;
+		this.buffersPerSlab = buffersPerSlab;
+	}
+	
+	/**
+	 * @return A cleared buffer
+	 */
+	ByteBuffer acquire() {
+		if(free.isEmpty()) allocateSlab();
+		return free.pollLast();
+	}
+	
+	void release(ByteBuffer buffer) {
+		buffer.clear();
+		free.addLast(buffer);
+	}
+	
+	/**
+	 * @return How many buffers there are, handed out or not
+	 */
+	int getAllocated() {
+		return allocated;
+	}
+	
+	int getFree() {
+		return free.size();
+	}
+	
+	private void allocateSlab() {
+		ByteBuffer slab = ByteBuffer.allocateDirect(bufferSize * buffersPerSlab);
+		for(int i = 0; i < buffersPerSlab; i++) {
+			slab.limit((i + 1) * bufferSize).position(i * bufferSize);
+			free.addLast(slab.slice());
+		}
+		allocated += buffersPerSlab;
+	}
+
+}
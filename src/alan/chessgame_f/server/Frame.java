@@ -0,0 +1,218 @@
+package alan.chessgame_f.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import alan.chessgame_f.BoardDelta;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.chess.PieceType;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * One message of the protocol, see {@link GameServer}. A frame to the spectators is encoded once
+ * and sent to every one of them as it is, it never changes.
+ *
+ * <pre>
+ * frame    : length of the rest (int), type (byte), payload
+ *
+ * To the clients
+ * DELTA    : since (long), sequence (long), changed (long), captured (long), promoted (long), move (short),
+ *            then a piece (byte) for each changed square, in the order of the squares, see {@link BoardDelta}
+ * TURN, CHECK, CHECKMATE, STALEMATE, GAMEOVER : side (byte)
+ * INVALID_MOVE      : x, y, destination x, y (byte each), piece (byte)
+ * ASCEND, CAN_TRANSLOCATION : square (byte)
+ * JOINED   : game (int), side (byte), -1 when watching
+ * MESSAGE, ERROR    : text in UTF-8
+ *
+ * From the clients, see {@link alan.chessgame_f.io.Joystick}
+ * PLAY     : wait for somebody to play with
+ * WATCH    : game (int)
+ * MOVE     : square, destination (byte each)
+ * ASCEND_TO         : piece type (byte), queen, rook, knight or bishop
+ * TRANSLOCATE       : 1 or 0 (byte)
+ * QUIT
+ * SAY      : text in UTF-8
+ * </pre>
+ *
+ * A piece is 0 for none, else 1 + side * 6 + type, by ordinal. A side is its ordinal, -1 for nobody.
+ * Squares are y*8+x.
+ */
+public final class Frame {
+	
+	public final static byte DELTA = 1;
+	public final static byte TURN = 2;
+	public final static byte CHECK = 3;
+	public final static byte CHECKMATE = 4;
+	public final static byte STALEMATE = 5;
+	public final static byte GAMEOVER = 6;
+	public final static byte INVALID_MOVE = 7;
+	public final static byte MESSAGE = 8;
+	public final static byte ASCEND = 9;
+	public final static byte CAN_TRANSLOCATION = 10;
+	public final static byte JOINED = 11;
+	public final static byte ERROR = 12;
+	
+	public final static byte PLAY = 32;
+	public final static byte WATCH = 33;
+	public final static byte MOVE = 34;
+	public final static byte ASCEND_TO = 35;
+	public final static byte TRANSLOCATE = 36;
+	public final static byte QUIT = 37;
+	public final static byte SAY = 38;
+	
+	/**
+	 * The length and the type.
+	 */
+	public final static int HEADER_SIZE = 5;
+	
+	private final static int DELTA_SIZE = HEADER_SIZE + 8 * 5 + 2;
+	private final static int PIECE_TYPES = PieceType.values().length;
+	
+	private final byte[] bytes;
+	
+	private Frame(byte[] bytes) {
+		this.bytes = bytes;
+	}
+	
+	static Frame of(BoardDelta delta) {
+		return of(delta, delta.since, delta.changed, delta.captured, delta.promoted, delta.move);
+	}
+	
+	/**
+	 * @return A resync to the position after the delta, for watchers joining
+	 */
+	static Frame resync(BoardDelta delta) {
+		return of(delta, -1, -1L, 0, 0, 0);
+	}
+	
+	private static Frame of(BoardDelta delta, long since, long changed, long captured, long promoted, int move) {
+		ByteBuffer buffer = allocate(DELTA, DELTA_SIZE + Long.bitCount(changed));
+		buffer.putLong(since);
+		buffer.putLong(delta.sequence);
+		buffer.putLong(changed);
+		buffer.putLong(captured);
+		buffer.putLong(promoted);
+		buffer.putShort(Move.compact(move));
+		for(; changed != 0; changed &= changed - 1) {
+			buffer.put(pieceCode(delta.getPiece(Long.numberOfTrailingZeros(changed))));
+		}
+		return new Frame(buffer.array());
+	}
+	
+	/**
+	 * @param side Null for nobody
+	 */
+	static Frame of(byte type, Side side) {
+		ByteBuffer buffer = allocate(type, HEADER_SIZE + 1);
+		buffer.put(side == null ? -1 : (byte) side.ordinal());
+		return new Frame(buffer.array());
+	}
+	
+	static Frame invalidMove(Coordinate2D coord, Coordinate2D dest, Piece piece) {
+		ByteBuffer buffer = allocate(INVALID_MOVE, HEADER_SIZE + 5);
+		buffer.put((byte) coord.x).put((byte) coord.y).put((byte) dest.x).put((byte) dest.y);
+		buffer.put(pieceCode(piece));
+		return new Frame(buffer.array());
+	}
+	
+	static Frame of(byte type, Coordinate2D coord) {
+		ByteBuffer buffer = allocate(type, HEADER_SIZE + 1);
+		buffer.put((byte) ((coord.y << 3) | coord.x));
+		return new Frame(buffer.array());
+	}
+	
+	/**
+	 * @param side Null when watching
+	 */
+	static Frame joined(int game, Side side) {
+		ByteBuffer buffer = allocate(JOINED, HEADER_SIZE + 5);
+		buffer.putInt(game);
+		buffer.put(side == null ? -1 : (byte) side.ordinal());
+		return new Frame(buffer.array());
+	}
+	
+	/**
+	 * PLAY or QUIT, the commands without payload.
+	 */
+	public static Frame command(byte type) {
+		return new Frame(allocate(type, HEADER_SIZE).array());
+	}
+	
+	public static Frame watch(int game) {
+		ByteBuffer buffer = allocate(WATCH, HEADER_SIZE + 4);
+		buffer.putInt(game);
+		return new Frame(buffer.array());
+	}
+	
+	public static Frame move(int square, int dest) {
+		ByteBuffer buffer = allocate(MOVE, HEADER_SIZE + 2);
+		buffer.put((byte) square).put((byte) dest);
+		return new Frame(buffer.array());
+	}
+	
+	public static Frame ascendTo(PieceType type) {
+		ByteBuffer buffer = allocate(ASCEND_TO, HEADER_SIZE + 1);
+		buffer.put((byte) type.ordinal());
+		return new Frame(buffer.array());
+	}
+	
+	public static Frame translocate(boolean translocate) {
+		ByteBuffer buffer = allocate(TRANSLOCATE, HEADER_SIZE + 1);
+		buffer.put(translocate ? (byte) 1 : 0);
+		return new Frame(buffer.array());
+	}
+	
+	/**
+	 * @param type MESSAGE, ERROR or SAY
+	 */
+	public static Frame text(byte type, String text) {
+		byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = allocate(type, HEADER_SIZE + bytes.length);
+		buffer.put(bytes);
+		return new Frame(buffer.array());
+	}
+	
+	public byte getType() {
+		return bytes[4];
+	}
+	
+	/**
+	 * @return How many bytes, with the header
+	 */
+	public int size() {
+		return bytes.length;
+	}
+	
+	/**
+	 * @return The whole frame, read-only, a new view each time
+	 */
+	public ByteBuffer buffer() {
+		return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+	}
+	
+	/**
+	 * Copies as much of the frame as fits, from the offset on.
+	 *
+	 * @return How many bytes were copied
+	 */
+	public int copyTo(ByteBuffer buffer, int offset) {
+		int length = Math.min(buffer.remaining(), bytes.length - offset);
+		buffer.put(bytes, offset, length);
+		return length;
+	}
+	
+	public static byte pieceCode(Piece piece) {
+		if(piece == null) return 0;
+		return (byte) (1 + piece.side.ordinal() * PIECE_TYPES + piece.getType().ordinal());
+	}
+	
+	private static ByteBuffer allocate(byte type, int size) {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[size]);
+		buffer.putInt(size - 4);
+		buffer.put(type);
+		return buffer;
+	}
+
+}
@@ -0,0 +1,145 @@
+package alan.chessgame_f.server;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import alan.chessgame_f.ChessGame;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.engine.EnginePlayer;
+import alan.chessgame_f.engine.Searcher;
+import alan.chessgame_f.io.Visualizer;
+
+/**
+ * Hosts many chess games in one JVM. <br>
+ * Every game loop runs on the host's executor, and so do the calls to the visualizers.
+ * Joy-stick commands only go to the game's own queue.
+ * By default that's one virtual thread per game when the JVM has them (Java 21+), so a game waiting
+ * for its players parks no OS thread.
+ * Older JVMs fall back to a cached pool of platform threads.
+ */
+public final class GameHost {
+	
+	private final ExecutorService executor;
+	private final boolean virtual;
+	private final Set<ChessGame> games = Collections.newSetFromMap(new ConcurrentHashMap<ChessGame, Boolean>());
+	private final ConcurrentMap<ChessGame, SpectatorHub> spectatorHubs = new ConcurrentHashMap<>();
+	
+	public GameHost() {
+		ExecutorService executor = newVirtualThreadPerTaskExecutor();
+		virtual = executor != null;
+		this.executor = virtual ? executor : Executors.newCachedThreadPool();
+	}
+	
+	/**
+	 * @param executor Runs the game loops, it must not queue tasks behind running games.
+	 */
+	public GameHost(ExecutorService executor) {
+		this.executor = executor;
+		virtual = false;
+	}
+	
+	/**
+	 * Creates a game and starts it right away.
+	 *
+	 * @param blackVisualizer Visualizer of black side
+	 * @param whiteVisualizer Visualizer of white side
+	 * @return The started game
+	 */
+	public ChessGame startGame(Visualizer blackVisualizer, Visualizer whiteVisualizer) {
+		ChessGame chessGame = new ChessGame(ChessGame.DEFAULT_COMMAND_CAPACITY, null, executor);
+		chessGame.setVisualizer(blackVisualizer, Side.BLACK);
+		chessGame.setVisualizer(whiteVisualizer, Side.WHITE);
+		start(chessGame);
+		return chessGame;
+	}
+	
+	/**
+	 * Starts a game against a computer player, for someone with nobody to play with.
+	 * The searches run on the host's executor too.
+	 *
+	 * @param visualizer Visualizer of the player
+	 * @param side Side of the player
+	 * @param search The search the computer player uses, one per game
+	 * @return The started game
+	 */
+	public ChessGame startGameAgainstEngine(Visualizer visualizer, Side side, Searcher search) {
+		final ChessGame chessGame = new ChessGame(ChessGame.DEFAULT_COMMAND_CAPACITY, null, executor);
+		Side engineSide = side == Side.WHITE ? Side.BLACK : Side.WHITE;
+		chessGame.setVisualizer(visualizer, side);
+		chessGame.setVisualizer(new EnginePlayer(chessGame, engineSide, search, executor), engineSide);
+		start(chessGame);
+		return chessGame;
+	}
+	
+	/**
+	 * Every game has at most one hub, however many watch it. The host lets go of it when the game is over,
+	 * the watchers already in still get the end of the game.
+	 *
+	 * @return The hub to watch the game through, null if the game is not hosted here or over
+	 */
+	public SpectatorHub getSpectatorHub(ChessGame chessGame) {
+		SpectatorHub spectatorHub = spectatorHubs.get(chessGame);
+		if(spectatorHub != null || !games.contains(chessGame)) return spectatorHub;
+		spectatorHub = new SpectatorHub();
+		SpectatorHub existing = spectatorHubs.putIfAbsent(chessGame, spectatorHub);
+		if(existing != null) return existing;
+		chessGame.addSpectator(spectatorHub);
+		// It might have ended in between
+		if(!games.contains(chessGame)) spectatorHubs.remove(chessGame);
+		return spectatorHub;
+	}
+	
+	/**
+	 * @return How many games are not over yet.
+	 */
+	public int getLiveGames() {
+		return games.size();
+	}
+	
+	public boolean isVirtual() {
+		return virtual;
+	}
+	
+	/**
+	 * Stops accepting games and interrupts the running ones.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return executor.awaitTermination(timeout, unit);
+	}
+	
+	private void start(final ChessGame chessGame) {
+		games.add(chessGame);
+		executor.execute(new Runnable() {
+			
+			@Override
+			public void run() {
+				try {
+					chessGame.run();
+				} finally {
+					games.remove(chessGame);
+					spectatorHubs.remove(chessGame);
+				}
+			}
+		});
+	}
+	
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,523 @@
+package alan.chessgame_f.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import alan.chessgame_f.BoardDelta;
+import alan.chessgame_f.ChessGame;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.chess.PieceType;
+import alan.chessgame_f.io.DeltaVisualizer;
+import alan.chessgame_f.io.Joystick;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * Lets remote clients play and watch the games of a {@link GameHost} over TCP, see {@link Frame} for the protocol. <br>
+ * All sockets are served by one selector thread, the one running it. A client sends PLAY and is paired with the next
+ * one that does, or WATCH to follow a game through its {@link SpectatorHub}. Then the joy-stick commands go in and
+ * the visualizer calls come out as frames. <br>
+ * Reads and writes go through pooled direct buffers, see {@link BufferPool}. A client that doesn't read what it's sent
+ * is disconnected once too much waits for it, a player quits the game with it.
+ *
+ * Usage: GameServer [port]
+ */
+public final class GameServer implements Runnable, Closeable {
+	
+	public final static int DEFAULT_PORT = 7310;
+	
+	private final static int BUFFER_SIZE = 4096;
+	private final static int BUFFERS_PER_SLAB = 64;
+	/**
+	 * No command comes near it, a longer frame is an error.
+	 */
+	private final static int MAX_COMMAND_SIZE = 1024;
+	/**
+	 * Frames that may wait for a player, see {@link SpectatorHub#DEFAULT_BUFFER_FRAMES} for the watchers.
+	 */
+	private final static int MAX_QUEUED_FRAMES = 256;
+	
+	private final GameHost host;
+	private final Selector selector;
+	private final ServerSocketChannel serverChannel;
+	private final BufferPool bufferPool = new BufferPool(BUFFER_SIZE, BUFFERS_PER_SLAB);
+	
+	/**
+	 * Connections with frames to send or to close, from other threads.
+	 */
+	private final ConcurrentLinkedQueue<Connection> woken = new ConcurrentLinkedQueue<>();
+	private final ConcurrentMap<Integer, ChessGame> games = new ConcurrentHashMap<>();
+	private int nextGame = 1;
+	private Connection waiting;
+	private volatile boolean closed;
+	
+	private final AtomicLong connections = new AtomicLong();
+	private final AtomicLong framesIn = new AtomicLong();
+	private final AtomicLong framesOut = new AtomicLong();
+	
+	/**
+	 * @param address Where to listen, port 0 for any
+	 */
+	public GameServer(GameHost host, InetSocketAddress address) throws IOException {
+		this.host = host;
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.bind(address);
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException ex) {
+			serverChannel.close();
+			selector.close();
+			throw ex;
+		}
+	}
+	
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+	
+	/**
+	 * @return How many clients are connected
+	 */
+	public long getConnections() {
+		return connections.get();
+	}
+	
+	public long getFramesIn() {
+		return framesIn.get();
+	}
+	
+	public long getFramesOut() {
+		return framesOut.get();
+	}
+	
+	/**
+	 * Serves until {@link #close()}, then disconnects everyone.
+	 */
+	@Override
+	public void run() {
+		try {
+			while(!closed) {
+				selector.select();
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if(!key.isValid()) continue;
+					if(key.isAcceptable()) {
+						accept();
+						continue;
+					}
+					Connection connection = (Connection) key.attachment();
+					try {
+						if(key.isReadable()) read(connection);
+						if(key.isValid() && key.isWritable()) flush(connection);
+					} catch (IOException ex) {
+						disconnect(connection);
+					}
+				}
+				for(Connection connection; (connection = woken.poll()) != null; ) {
+					connection.woken.set(false);
+					if(connection.disconnected) continue;
+					try {
+						if(connection.overflow) {
+							disconnect(connection);
+						} else flush(connection);
+					} catch (IOException ex) {
+						disconnect(connection);
+					}
+				}
+			}
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		} finally {
+			for (SelectionKey key : selector.keys()) {
+				if(key.attachment() instanceof Connection) disconnect((Connection) key.attachment());
+			}
+			try {
+				serverChannel.close();
+				selector.close();
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+	}
+	
+	@Override
+	public void close() {
+		closed = true;
+		selector.wakeup();
+	}
+	
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if(channel == null) return;
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+		Connection connection = new Connection(this, channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+		connections.incrementAndGet();
+	}
+	
+	private void read(Connection connection) throws IOException {
+		if(connection.readBuffer == null) connection.readBuffer = bufferPool.acquire();
+		ByteBuffer buffer = connection.readBuffer;
+		if(connection.channel.read(buffer) < 0) {
+			disconnect(connection);
+			return;
+		}
+		buffer.flip();
+		while(buffer.remaining() >= 4) {
+			int length = buffer.getInt(buffer.position());
+			if(length < 1 || length > MAX_COMMAND_SIZE) {
+				disconnect(connection);
+				return;
+			}
+			if(buffer.remaining() < 4 + length) break;
+			int end = buffer.position() + 4 + length;
+			buffer.position(buffer.position() + 4);
+			int limit = buffer.limit();
+			buffer.limit(end);
+			framesIn.incrementAndGet();
+			boolean valid = process(connection, buffer);
+			if(connection.disconnected) return;
+			if(!valid) {
+				disconnect(connection);
+				return;
+			}
+			buffer.limit(limit).position(end);
+		}
+		buffer.compact();
+		if(buffer.position() == 0) {
+			// Nothing half read, the buffer can serve someone else
+			bufferPool.release(buffer);
+			connection.readBuffer = null;
+		}
+	}
+	
+	/**
+	 * @param buffer The type and payload of one frame, nothing else
+	 * @return Whether it was a frame of the protocol, the client is disconnected if not
+	 */
+	private boolean process(Connection connection, ByteBuffer buffer) {
+		byte type = buffer.get();
+		Joystick joystick = connection.joystick;
+		switch(type) {
+		case Frame.PLAY:
+			if(joystick != null || connection.subscription != null || waiting == connection) {
+				connection.send(Frame.text(Frame.ERROR, "Playing or watching already"));
+			} else if(waiting == null) {
+				waiting = connection;
+			} else {
+				startGame(waiting, connection);
+				waiting = null;
+			}
+			return true;
+		case Frame.WATCH:
+			if(buffer.remaining() < 4) return false;
+			int game = buffer.getInt();
+			if(joystick != null || connection.subscription != null || waiting == connection) {
+				connection.send(Frame.text(Frame.ERROR, "Playing or watching already"));
+				return true;
+			}
+			// Only now, the hub follows the game for good once it's there
+			ChessGame chessGame = games.get(game);
+			SpectatorHub spectatorHub = chessGame == null ? null : host.getSpectatorHub(chessGame);
+			if(spectatorHub == null) {
+				connection.send(Frame.text(Frame.ERROR, "No game " + game));
+			} else {
+				connection.send(Frame.joined(game, null));
+				connection.subscription = spectatorHub.subscribe(connection);
+			}
+			return true;
+		case Frame.MOVE:
+			if(buffer.remaining() < 2) return false;
+			int square = buffer.get() & 0xFF, dest = buffer.get() & 0xFF;
+			if(square > 63 || dest > 63) return false;
+			if(joystick != null) joystick.move(Coordinate2D.of(square), Coordinate2D.of(dest));
+			return true;
+		case Frame.ASCEND_TO:
+			if(buffer.remaining() < 1) return false;
+			int ascendType = buffer.get();
+			if(ascendType < 0 || ascendType >= PieceType.values().length) return false;
+			// Only the four a pawn can become
+			if(!Move.isAscendType(PieceType.values()[ascendType])) return false;
+			if(joystick != null) joystick.ascendTo(PieceType.values()[ascendType]);
+			return true;
+		case Frame.TRANSLOCATE:
+			if(buffer.remaining() < 1) return false;
+			boolean translocate = buffer.get() != 0;
+			if(joystick != null) joystick.decideTranslocation(translocate);
+			return true;
+		case Frame.QUIT:
+			if(joystick != null) joystick.quit();
+			if(waiting == connection) waiting = null;
+			if(connection.subscription != null) {
+				connection.subscription.close();
+				connection.subscription = null;
+			}
+			return true;
+		case Frame.SAY:
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			if(joystick != null) joystick.message(new String(bytes, StandardCharsets.UTF_8));
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	/**
+	 * The one who waited plays white.
+	 */
+	private void startGame(Connection white, Connection black) {
+		int game = nextGame++;
+		// Told before the game can send anything
+		white.send(Frame.joined(game, Side.WHITE));
+		black.send(Frame.joined(game, Side.BLACK));
+		ChessGame chessGame = host.startGame(new RemotePlayer(black, game), new RemotePlayer(white, game));
+		games.put(game, chessGame);
+		white.joystick = chessGame.whiteJoystick;
+		black.joystick = chessGame.blackJoystick;
+	}
+	
+	/**
+	 * Sends what waits for the connection until it's all sent or the socket takes no more.
+	 */
+	private void flush(Connection connection) throws IOException {
+		if(connection.writeBuffer == null) connection.writeBuffer = bufferPool.acquire();
+		ByteBuffer buffer = connection.writeBuffer;
+		for (;;) {
+			fill(connection, buffer);
+			buffer.flip();
+			connection.channel.write(buffer);
+			boolean full = buffer.hasRemaining();
+			buffer.compact();
+			if(full) {
+				connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return;
+			}
+			if(connection.writing == null) break;
+		}
+		bufferPool.release(buffer);
+		connection.writeBuffer = null;
+		connection.key.interestOps(SelectionKey.OP_READ);
+	}
+	
+	/**
+	 * Copies frames until the buffer is full or none is left, a frame may be split over two writes.
+	 */
+	private void fill(Connection connection, ByteBuffer buffer) {
+		while(buffer.hasRemaining()) {
+			if(connection.writing == null) {
+				connection.writing = connection.nextFrame();
+				connection.writingOffset = 0;
+				if(connection.writing == null) return;
+				framesOut.incrementAndGet();
+			}
+			connection.writingOffset += connection.writing.copyTo(buffer, connection.writingOffset);
+			if(connection.writingOffset < connection.writing.size()) return;
+			connection.writing = null;
+		}
+	}
+	
+	private void disconnect(Connection connection) {
+		if(connection.disconnected) return;
+		connection.disconnected = true;
+		connection.key.cancel();
+		try {
+			connection.channel.close();
+		} catch (IOException ex) {
+			// Gone either way
+		}
+		if(connection.readBuffer != null) bufferPool.release(connection.readBuffer);
+		if(connection.writeBuffer != null) bufferPool.release(connection.writeBuffer);
+		connection.readBuffer = connection.writeBuffer = null;
+		if(waiting == connection) waiting = null;
+		Joystick joystick = connection.joystick;
+		if(joystick != null) joystick.quit();
+		if(connection.subscription != null) connection.subscription.close();
+		connections.decrementAndGet();
+	}
+	
+	/**
+	 * Called from any thread, the selector thread takes it from there.
+	 */
+	private void wake(Connection connection) {
+		if(connection.woken.compareAndSet(false, true)) {
+			woken.add(connection);
+			selector.wakeup();
+		}
+	}
+	
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		GameServer server = new GameServer(new GameHost(), new InetSocketAddress(port));
+		System.out.println("Listening on port " + server.getPort());
+		server.run();
+	}
+	
+	private final static class Connection implements SpectatorHub.Listener {
+		
+		final GameServer server;
+		final SocketChannel channel;
+		SelectionKey key;
+		
+		/**
+		 * Only while something is half read or half written, see {@link BufferPool}.
+		 */
+		ByteBuffer readBuffer;
+		ByteBuffer writeBuffer;
+		Frame writing;
+		int writingOffset;
+		
+		/**
+		 * Frames for a player, from the visualizer calls.
+		 */
+		private final ArrayDeque<Frame> queued = new ArrayDeque<>();
+		private final Lock queuedLock = new ReentrantLock();
+		SpectatorHub.Subscription subscription;
+		
+		/**
+		 * Null when not playing, cleared by the game over from a visualizer call.
+		 */
+		volatile Joystick joystick;
+		final AtomicBoolean woken = new AtomicBoolean();
+		volatile boolean overflow;
+		boolean disconnected;
+		
+		Connection(GameServer server, SocketChannel channel) {
+			this.server = server;
+			this.channel = channel;
+		}
+		
+		void send(Frame frame) {
+			queuedLock.lock();
+			try {
+				if(queued.size() >= MAX_QUEUED_FRAMES) {
+					overflow = true;
+				} else queued.addLast(frame);
+			} finally {
+				queuedLock.unlock();
+			}
+			server.wake(this);
+		}
+		
+		Frame nextFrame() {
+			queuedLock.lock();
+			try {
+				Frame frame = queued.pollFirst();
+				if(frame != null) return frame;
+			} finally {
+				queuedLock.unlock();
+			}
+			return subscription == null ? null : subscription.poll();
+		}
+		
+		@Override
+		public void onFrames(SpectatorHub.Subscription subscription) {
+			server.wake(this);
+		}
+		
+		/**
+		 * Evicted, or the hub closed.
+		 */
+		@Override
+		public void onClosed(SpectatorHub.Subscription subscription) {
+			overflow = true;
+			server.wake(this);
+		}
+	
+	}
+	
+	/**
+	 * The visualizer of a remote player, every call becomes a frame.
+	 */
+	private final static class RemotePlayer implements DeltaVisualizer {
+		
+		private final Connection connection;
+		private final int game;
+		
+		RemotePlayer(Connection connection, int game) {
+			this.connection = connection;
+			this.game = game;
+		}
+		
+		@Override
+		public void onChessboardDelta(BoardDelta delta) {
+			connection.send(Frame.of(delta));
+		}
+		
+		@Override
+		public void onChessboardUpdate(Map<Coordinate2D, Piece> chessboard) {}
+		
+		@Override
+		public void onInvalidMove(Coordinate2D coord, Coordinate2D dest, Piece piece) {
+			connection.send(Frame.invalidMove(coord, dest, piece));
+		}
+		
+		@Override
+		public void onTurnChanges(Side side) {
+			connection.send(Frame.of(Frame.TURN, side));
+		}
+		
+		@Override
+		public void onGameover(Side side) {
+			connection.server.games.remove(game);
+			// Free to play again
+			connection.joystick = null;
+			connection.send(Frame.of(Frame.GAMEOVER, side));
+		}
+		
+		@Override
+		public void onCheck(Side side) {
+			connection.send(Frame.of(Frame.CHECK, side));
+		}
+		
+		@Override
+		public void onCheckmate(Side side) {
+			connection.send(Frame.of(Frame.CHECKMATE, side));
+		}
+		
+		@Override
+		public void onStalemate(Side side) {
+			connection.send(Frame.of(Frame.STALEMATE, side));
+		}
+		
+		@Override
+		public void onMessage(String message) {
+			connection.send(Frame.text(Frame.MESSAGE, message));
+		}
+		
+		@Override
+		public void onAscend(Coordinate2D coord) {
+			connection.send(Frame.of(Frame.ASCEND, coord));
+		}
+		
+		@Override
+		public void onCanTranslocation(Coordinate2D coord) {
+			connection.send(Frame.of(Frame.CAN_TRANSLOCATION, coord));
+		}
+	
+	}
+
+}
@@ -0,0 +1,426 @@
+package alan.chessgame_f.server;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import alan.chessgame_f.BoardDelta;
+import alan.chessgame_f.ChessGame;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.io.DeltaVisualizer;
+import alan.chessgame_f.io.Visualizer;
+import alan.chessgame_f.util.Coordinate2D;
+
+/**
+ * Lets any number of watchers follow one game. Add it as a spectator, see {@link ChessGame#addSpectator(Visualizer)},
+ * and the game has one visualizer more however many watch. <br>
+ * Every event is encoded into a {@link Frame} once, and the same frame goes into the buffer of every subscription.
+ * A subscription whose buffer is full is evicted, it fell too far behind to catch up. <br>
+ * Watchers joining start with the whole chess-board, whose turn it is and the end of the game if it's over.
+ */
+public final class SpectatorHub implements DeltaVisualizer {
+	
+	public final static int DEFAULT_BUFFER_FRAMES = 64;
+	
+	private final int bufferFrames;
+	private final Lock lock = new ReentrantLock();
+	private final AtomicLong evicted = new AtomicLong();
+	
+	private Subscription[] subscriptions = new Subscription[16];
+	private int size;
+	private boolean closed;
+	
+	/**
+	 * Who to tell after a frame goes out, only touched with the lock held.
+	 */
+	private Subscription[] woken = new Subscription[16];
+	private Subscription[] dropped = new Subscription[16];
+	private int wokenCount, droppedCount;
+	
+	private BoardDelta latest;
+	/**
+	 * Of the latest delta, encoded once somebody joins.
+	 */
+	private Frame resync;
+	private Frame turn;
+	private Frame gameover;
+	
+	public SpectatorHub() {
+		this(DEFAULT_BUFFER_FRAMES);
+	}
+	
+	/**
+	 * @param bufferFrames How many frames may wait for a watcher before it's evicted
+	 */
+	public SpectatorHub(int bufferFrames) {
+		if(bufferFrames < 4) throw new IllegalArgumentException("Buffer too small: " + bufferFrames);
+		this.bufferFrames = bufferFrames;
+	}
+	
+	/**
+	 * The frames waiting already are announced right away, see {@link Listener#onFrames(Subscription)}.
+	 *
+	 * @return The subscription, closed already if the hub is
+	 */
+	public Subscription subscribe(Listener listener) {
+		Subscription subscription = new Subscription(this, listener, bufferFrames);
+		lock.lock();
+		try {
+			if(closed) {
+				subscription.closed = true;
+				return subscription;
+			}
+			if(latest != null) {
+				if(resync == null) resync = Frame.resync(latest);
+				subscription.offer(resync);
+			}
+			if(turn != null) subscription.offer(turn);
+			if(gameover != null) subscription.offer(gameover);
+			if(size == subscriptions.length) subscriptions = Arrays.copyOf(subscriptions, size * 2);
+			subscription.index = size;
+			subscriptions[size++] = subscription;
+		} finally {
+			lock.unlock();
+		}
+		if(subscription.getQueued() > 0) listener.onFrames(subscription);
+		return subscription;
+	}
+	
+	public int getSubscribers() {
+		lock.lock();
+		try {
+			return size;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * @return How many subscriptions were evicted for falling behind
+	 */
+	public long getEvicted() {
+		return evicted.get();
+	}
+	
+	/**
+	 * Closes every subscription, nobody can subscribe after.
+	 */
+	public void close() {
+		lock.lock();
+		try {
+			closed = true;
+			while(size > 0) dropped(remove(size - 1));
+		} finally {
+			lock.unlock();
+		}
+		announce();
+	}
+	
+	@Override
+	public void onChessboardDelta(BoardDelta delta) {
+		Frame frame = delta.isResync() ? Frame.resync(delta) : Frame.of(delta);
+		lock.lock();
+		try {
+			latest = delta;
+			resync = delta.isResync() ? frame : null;
+			// A resync without a game over is a new game
+			if(delta.isResync()) gameover = null;
+			fanOut(frame);
+		} finally {
+			lock.unlock();
+		}
+		announce();
+	}
+	
+	@Override
+	public void onTurnChanges(Side side) {
+		Frame frame = Frame.of(Frame.TURN, side);
+		lock.lock();
+		try {
+			turn = frame;
+			fanOut(frame);
+		} finally {
+			lock.unlock();
+		}
+		announce();
+	}
+	
+	@Override
+	public void onGameover(Side side) {
+		Frame frame = Frame.of(Frame.GAMEOVER, side);
+		lock.lock();
+		try {
+			gameover = frame;
+			fanOut(frame);
+		} finally {
+			lock.unlock();
+		}
+		announce();
+	}
+	
+	@Override
+	public void onCheck(Side side) {
+		publish(Frame.of(Frame.CHECK, side));
+	}
+	
+	@Override
+	public void onCheckmate(Side side) {
+		publish(Frame.of(Frame.CHECKMATE, side));
+	}
+	
+	@Override
+	public void onStalemate(Side side) {
+		publish(Frame.of(Frame.STALEMATE, side));
+	}
+	
+	/**
+	 * Never called, the deltas come instead.
+	 */
+	@Override
+	public void onChessboardUpdate(Map<Coordinate2D, Piece> chessboard) {}
+	
+	@Override
+	public void onInvalidMove(Coordinate2D coord, Coordinate2D dest, Piece piece) {}
+	
+	@Override
+	public void onMessage(String message) {}
+	
+	@Override
+	public void onAscend(Coordinate2D coord) {}
+	
+	@Override
+	public void onCanTranslocation(Coordinate2D coord) {}
+	
+	private void publish(Frame frame) {
+		lock.lock();
+		try {
+			fanOut(frame);
+		} finally {
+			lock.unlock();
+		}
+		announce();
+	}
+	
+	/**
+	 * Must hold the lock.
+	 */
+	private void fanOut(Frame frame) {
+		for(int i = 0; i < size; ) {
+			Subscription subscription = subscriptions[i];
+			int queued = subscription.offer(frame);
+			if(queued < 0) {
+				evicted.incrementAndGet();
+				dropped(remove(i));
+				continue;
+			}
+			if(queued == 1) {
+				if(wokenCount == woken.length) woken = Arrays.copyOf(woken, wokenCount * 2);
+				woken[wokenCount++] = subscription;
+			}
+			i++;
+		}
+	}
+	
+	/**
+	 * Must hold the lock. The last subscription takes its place.
+	 */
+	private Subscription remove(int index) {
+		Subscription subscription = subscriptions[index];
+		subscription.clear();
+		subscriptions[index] = subscriptions[--size];
+		subscriptions[index].index = index;
+		subscriptions[size] = null;
+		return subscription;
+	}
+	
+	/**
+	 * Must hold the lock.
+	 */
+	private void dropped(Subscription subscription) {
+		if(droppedCount == dropped.length) dropped = Arrays.copyOf(dropped, droppedCount * 2);
+		dropped[droppedCount++] = subscription;
+	}
+	
+	/**
+	 * Tells the listeners outside the lock, the lock only comes back to take the lists.
+	 */
+	private void announce() {
+		for (;;) {
+			Subscription subscription;
+			boolean wake;
+			lock.lock();
+			try {
+				if(wokenCount > 0) {
+					subscription = woken[--wokenCount];
+					woken[wokenCount] = null;
+					wake = true;
+				} else if(droppedCount > 0) {
+					subscription = dropped[--droppedCount];
+					dropped[droppedCount] = null;
+					wake = false;
+				} else return;
+			} finally {
+				lock.unlock();
+			}
+			try {
+				if(wake) {
+					subscription.listener.onFrames(subscription);
+				} else subscription.listener.onClosed(subscription);
+			} catch (RuntimeException ex) {
+				// Only this watcher misses out
+				ex.printStackTrace();
+			}
+		}
+	}
+	
+	private void unsubscribe(Subscription subscription) {
+		lock.lock();
+		try {
+			// It closed itself, nobody to tell
+			if(subscription.index < size && subscriptions[subscription.index] == subscription) remove(subscription.index);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Told when a subscription needs attention, on whatever thread published. Keep it short,
+	 * e.g. wake up the selector that writes to the watcher.
+	 */
+	public interface Listener {
+		
+		/**
+		 * Frames are waiting, none were before. It's not called again until {@link Subscription#poll()} returned null.
+		 */
+		public void onFrames(Subscription subscription);
+		
+		/**
+		 * The subscription was evicted or the hub closed, but not when it was closed itself.
+		 */
+		public void onClosed(Subscription subscription);
+	
+	}
+	
+	/**
+	 * A bounded buffer of the frames for one watcher, taken one by one with {@link #poll()}.
+	 */
+	public final static class Subscription {
+		
+		private final SpectatorHub hub;
+		private final Listener listener;
+		private final Frame[] frames;
+		private int head;
+		private int count;
+		/**
+		 * Set when {@link #poll()} found nothing, the next frame wakes the listener.
+		 */
+		private boolean drained = true;
+		private boolean closed;
+		private boolean evicted;
+		/**
+		 * Where it is in the hub, only touched with the hub's lock held.
+		 */
+		private int index;
+		private final Lock lock = new ReentrantLock();
+		
+		private Subscription(SpectatorHub hub, Listener listener, int capacity) {
+			this.hub = hub;
+			this.listener = listener;
+			frames = new Frame[capacity];
+		}
+		
+		/**
+		 * @return The next frame, null if there's none yet or it's closed
+		 */
+		public Frame poll() {
+			lock.lock();
+			try {
+				if(count == 0 || closed) {
+					drained = true;
+					return null;
+				}
+				Frame frame = frames[head];
+				frames[head] = null;
+				head = (head + 1) % frames.length;
+				count--;
+				return frame;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		public int getQueued() {
+			lock.lock();
+			try {
+				return count;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		public boolean isClosed() {
+			lock.lock();
+			try {
+				return closed;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		/**
+		 * @return Whether it was closed for falling behind
+		 */
+		public boolean isEvicted() {
+			lock.lock();
+			try {
+				return evicted;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		/**
+		 * Stops watching, the frames waiting are dropped.
+		 */
+		public void close() {
+			hub.unsubscribe(this);
+			clear();
+		}
+		
+		/**
+		 * @return 1 if the listener should be woken, 0 if not, -1 if it's full and got evicted
+		 */
+		private int offer(Frame frame) {
+			lock.lock();
+			try {
+				if(closed) return 0;
+				if(count == frames.length) {
+					evicted = true;
+					return -1;
+				}
+				frames[(head + count++) % frames.length] = frame;
+				if(!drained) return 0;
+				drained = false;
+				return 1;
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		private void clear() {
+			lock.lock();
+			try {
+				closed = true;
+				Arrays.fill(frames, null);
+				count = 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+	
+	}
+
+}
@@ -0,0 +1,284 @@
+package alan.chessgame_f.tablebase;
+
+import java.util.Arrays;
+
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.PieceType;
+
+/**
+ * The pieces of a table, e.g. "KQvKR", white's before the "v". <br>
+ * Positions are indexed by where the pieces stand, turned by the board's 8 symmetries so the white king
+ * is in the a1-d1-d4 triangle, which leaves 10 squares for it and 64 for every other piece:
+ *
+ * <pre>
+ * index = side to move * size / 2 + (king * 64 + square of the 2nd piece) * 64 + ...
+ * </pre>
+ *
+ * The side to move goes first so the runs of the same value stay long, see {@link TableFile}.
+ * Pieces of the same kind are taken in the order of their squares, and of the symmetries that
+ * put the king in the triangle the one with the lowest index is taken, so every position has exactly one index.
+ * Indices that aren't the lowest of their position, or have two pieces on a square, are not positions. <br>
+ * Pawns are not supported, the symmetries don't hold for them.
+ */
+public final class Material {
+	
+	public final static int MAX_PIECES = 5;
+	
+	private final static int PIECE_TYPES = PieceType.values().length;
+	
+	/**
+	 * Order of the pieces after the king.
+	 */
+	private final static PieceType[] ORDER = {PieceType.QUEEN, PieceType.ROOK, PieceType.BISHOP, PieceType.KNIGHT};
+	
+	private final static int[] TRIANGLE = new int[64];
+	private final static int[] TRIANGLE_SQUARES = new int[10];
+	
+	static {
+		Arrays.fill(TRIANGLE, -1);
+		int count = 0;
+		for(int y = 0; y < 4; y++) {
+			for(int x = y; x < 4; x++) {
+				TRIANGLE_SQUARES[count] = y * 8 + x;
+				TRIANGLE[y * 8 + x] = count++;
+			}
+		}
+	}
+	
+	private final String name;
+	private final long key;
+	/**
+	 * Bitboard index, see {@link #bitboardIndex(Side, PieceType)}, of each group of same pieces, white king first.
+	 */
+	private final int[] groups;
+	private final int[] groupSizes;
+	private final int pieces;
+	private final int size;
+	
+	private Material(int[] counts) {
+		long key = 0;
+		int groupCount = 0, pieces = 0;
+		for(int i = 0; i < counts.length; i++) {
+			key |= (long) counts[i] << (i * 4);
+			if(counts[i] > 0) groupCount++;
+			pieces += counts[i];
+		}
+		this.key = key;
+		this.pieces = pieces;
+		groups = new int[groupCount];
+		groupSizes = new int[groupCount];
+		StringBuilder name = new StringBuilder();
+		int group = 0;
+		for (Side side : new Side[] {Side.WHITE, Side.BLACK}) {
+			if(side == Side.BLACK) name.append('v');
+			int king = bitboardIndex(side, PieceType.KING);
+			groups[group] = king;
+			groupSizes[group++] = counts[king];
+			name.append('K');
+			for (PieceType type : ORDER) {
+				int index = bitboardIndex(side, type);
+				if(counts[index] == 0) continue;
+				groups[group] = index;
+				groupSizes[group++] = counts[index];
+				for(int i = 0; i < counts[index]; i++) name.append(toChar(type));
+			}
+		}
+		this.name = name.toString();
+		size = 10 * (1 << (6 * (pieces - 1))) * 2;
+	}
+	
+	/**
+	 * @param name Like "KQvK" or "KRvKN", a king on each side
+	 * @throws IllegalArgumentException If it's not like that, has pawns or too many pieces
+	 */
+	public static Material parse(String name) {
+		int[] counts = new int[PIECE_TYPES * 2];
+		int split = name.indexOf('v');
+		if(split < 0) throw new IllegalArgumentException("No 'v' between the sides: " + name);
+		for(int i = 0; i < name.length(); i++) {
+			if(i == split) continue;
+			Side side = i < split ? Side.WHITE : Side.BLACK;
+			PieceType type = toType(name.charAt(i));
+			if(type == null) throw new IllegalArgumentException("Unknown piece '" + name.charAt(i) + "': " + name);
+			if(type == PieceType.PAWN) throw new IllegalArgumentException("Tables have no pawns: " + name);
+			counts[bitboardIndex(side, type)]++;
+		}
+		return of(counts, name);
+	}
+	
+	/**
+	 * @return The material of the key, see {@link #key(long[])}
+	 */
+	public static Material of(long key) {
+		int[] counts = new int[PIECE_TYPES * 2];
+		for(int i = 0; i < counts.length; i++) counts[i] = (int) (key >>> (i * 4)) & 0xF;
+		return of(counts, "key " + Long.toHexString(key));
+	}
+	
+	private static Material of(int[] counts, String name) {
+		if(counts[bitboardIndex(Side.WHITE, PieceType.KING)] != 1 || counts[bitboardIndex(Side.BLACK, PieceType.KING)] != 1) {
+			throw new IllegalArgumentException("One king on each side is needed: " + name);
+		}
+		if(counts[bitboardIndex(Side.WHITE, PieceType.PAWN)] + counts[bitboardIndex(Side.BLACK, PieceType.PAWN)] > 0) {
+			throw new IllegalArgumentException("Tables have no pawns: " + name);
+		}
+		int pieces = 0;
+		for (int count : counts) pieces += count;
+		if(pieces > MAX_PIECES) throw new IllegalArgumentException("More than " + MAX_PIECES + " pieces: " + name);
+		return new Material(counts);
+	}
+	
+	/**
+	 * @return How many of each piece, 4 bits each, in the order of the bitboards
+	 */
+	public static long key(long[] bitboards) {
+		long key = 0;
+		for(int i = 0; i < bitboards.length; i++) key |= (long) Long.bitCount(bitboards[i]) << (i * 4);
+		return key;
+	}
+	
+	/**
+	 * @return The key with white's and black's pieces swapped
+	 */
+	public static long flip(long key) {
+		int bits = PIECE_TYPES * 4;
+		long mask = (1L << bits) - 1;
+		return (key & mask) << bits | (key >>> bits) & mask;
+	}
+	
+	/**
+	 * Swaps white's and black's pieces and mirrors the ranks, it's the same position for the other side.
+	 */
+	public static void flip(long[] bitboards) {
+		for(int i = 0; i < PIECE_TYPES; i++) {
+			long white = bitboards[i + PIECE_TYPES];
+			bitboards[i + PIECE_TYPES] = Long.reverseBytes(bitboards[i]);
+			bitboards[i] = Long.reverseBytes(white);
+		}
+	}
+	
+	public long getKey() {
+		return key;
+	}
+	
+	public int getPieces() {
+		return pieces;
+	}
+	
+	/**
+	 * @return How many indices there are, positions or not
+	 */
+	public int getSize() {
+		return size;
+	}
+	
+	/**
+	 * @param bitboards The pieces, indexed by {@link #bitboardIndex(Side, PieceType)}, of this material
+	 * @param turn {@link Side#ordinal()} of the side to move
+	 */
+	public int index(long[] bitboards, int turn) {
+		long king = bitboards[groups[0]];
+		int best = Integer.MAX_VALUE;
+		for(int symmetry = 0; symmetry < 8; symmetry++) {
+			int kingSquare = Long.numberOfTrailingZeros(transform(king, symmetry));
+			if(TRIANGLE[kingSquare] < 0) continue;
+			int index = TRIANGLE[kingSquare];
+			for(int group = 1; group < groups.length; group++) {
+				long pieces = transform(bitboards[groups[group]], symmetry);
+				for(; pieces != 0; pieces &= pieces - 1) index = index * 64 + Long.numberOfTrailingZeros(pieces);
+			}
+			index += turn * (size >>> 1);
+			if(index < best) best = index;
+		}
+		return best;
+	}
+	
+	/**
+	 * @param bitboards Where the pieces go, cleared first
+	 * @return {@link Side#ordinal()} of the side to move, or -1 if it's not a position
+	 */
+	public int decode(int index, long[] bitboards) {
+		Arrays.fill(bitboards, 0);
+		int turn = index / (size >>> 1);
+		int rest = index % (size >>> 1);
+		long occupancy = 0;
+		for(int group = groups.length - 1; group >= 0; group--) {
+			for(int i = 0; i < groupSizes[group]; i++) {
+				int square;
+				if(group == 0) {
+					square = TRIANGLE_SQUARES[rest];
+				} else {
+					square = rest & 63;
+					rest >>>= 6;
+				}
+				long bit = 1L << square;
+				if((occupancy & bit) != 0) return -1;
+				occupancy |= bit;
+				bitboards[groups[group]] |= bit;
+			}
+		}
+		return index(bitboards, turn) == index ? turn : -1;
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+	
+	public static int bitboardIndex(Side side, PieceType type) {
+		return side.ordinal() * PIECE_TYPES + type.ordinal();
+	}
+	
+	/**
+	 * @param symmetry Bit 0 mirrors the files, bit 1 the ranks, bit 2 flips along the a1-h8 diagonal, in that order
+	 */
+	static long transform(long bitboard, int symmetry) {
+		if((symmetry & 1) != 0) bitboard = mirrorFiles(bitboard);
+		if((symmetry & 2) != 0) bitboard = Long.reverseBytes(bitboard);
+		if((symmetry & 4) != 0) bitboard = flipDiagonal(bitboard);
+		return bitboard;
+	}
+	
+	private static long mirrorFiles(long bitboard) {
+		bitboard = (bitboard >>> 1) & 0x5555555555555555L | (bitboard & 0x5555555555555555L) << 1;
+		bitboard = (bitboard >>> 2) & 0x3333333333333333L | (bitboard & 0x3333333333333333L) << 2;
+		return (bitboard >>> 4) & 0x0F0F0F0F0F0F0F0FL | (bitboard & 0x0F0F0F0F0F0F0F0FL) << 4;
+	}
+	
+	/**
+	 * Swaps files and ranks, a1 and h8 stay.
+	 */
+	private static long flipDiagonal(long bitboard) {
+		long t;
+		t = 0x0F0F0F0F00000000L & (bitboard ^ (bitboard << 28));
+		bitboard ^= t ^ (t >>> 28);
+		t = 0x3333000033330000L & (bitboard ^ (bitboard << 14));
+		bitboard ^= t ^ (t >>> 14);
+		t = 0x5500550055005500L & (bitboard ^ (bitboard << 7));
+		bitboard ^= t ^ (t >>> 7);
+		return bitboard;
+	}
+	
+	private static PieceType toType(char c) {
+		switch(c) {
+		case 'K': return PieceType.KING;
+		case 'Q': return PieceType.QUEEN;
+		case 'R': return PieceType.ROOK;
+		case 'B': return PieceType.BISHOP;
+		case 'N': return PieceType.KNIGHT;
+		case 'P': return PieceType.PAWN;
+		default: return null;
+		}
+	}
+	
+	private static char toChar(PieceType type) {
+		switch(type) {
+		case QUEEN: return 'Q';
+		case ROOK: return 'R';
+		case BISHOP: return 'B';
+		case KNIGHT: return 'N';
+		default: throw new IllegalArgumentException("Unknown piece type: " + type);
+		}
+	}
+
+}
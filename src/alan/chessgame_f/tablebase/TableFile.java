@@ -0,0 +1,115 @@
+package alan.chessgame_f.tablebase;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * One table, memory-mapped. The values are run-length coded in blocks, so finding one only decodes its block.
+ *
+ * <pre>
+ * header  : magic "CGT1", block size (int), material key (long), indices (int), blocks (int)
+ * offsets : where each block starts in the data (int), and where the data ends
+ * data    : runs of (length - 1, value) byte pairs, no run crosses a block
+ * </pre>
+ *
+ * Indices that aren't positions are never probed, they join whatever run is next to them.
+ */
+final class TableFile {
+	
+	final static int MAGIC = 0x43475431;
+	final static String SUFFIX = ".cgt";
+	
+	private final static int BLOCK_SIZE = 1024;
+	private final static int HEADER_SIZE = 24;
+	
+	final Material material;
+	private final MappedByteBuffer buffer;
+	private final int dataStart;
+	
+	TableFile(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			// The mapping stays after the channel is closed
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) throw new IOException("Not a table: " + path);
+		if(buffer.getInt(4) != BLOCK_SIZE) throw new IOException("Unknown block size " + buffer.getInt(4) + ": " + path);
+		try {
+			material = Material.of(buffer.getLong(8));
+		} catch (IllegalArgumentException ex) {
+			throw new IOException("Bad material of " + path + ", " + ex.getMessage());
+		}
+		int blocks = buffer.getInt(20);
+		if(buffer.getInt(16) != material.getSize() || blocks != blocks(material.getSize())) throw new IOException("Table cut off: " + path);
+		dataStart = HEADER_SIZE + (blocks + 1) * 4;
+		if(buffer.capacity() < dataStart || dataStart + buffer.getInt(HEADER_SIZE + blocks * 4) != buffer.capacity()) {
+			throw new IOException("Table cut off: " + path);
+		}
+	}
+	
+	/**
+	 * Only absolute reads, any number of threads can look up at once.
+	 */
+	int get(int index) {
+		int block = index / BLOCK_SIZE;
+		int position = dataStart + buffer.getInt(HEADER_SIZE + block * 4);
+		for(int remaining = index % BLOCK_SIZE; ; position += 2) {
+			int length = (buffer.get(position) & 0xFF) + 1;
+			if(remaining < length) return buffer.get(position + 1) & 0xFF;
+			remaining -= length;
+		}
+	}
+	
+	static void write(Path path, Material material, byte[] values) throws IOException {
+		int blocks = blocks(values.length);
+		int[] offsets = new int[blocks + 1];
+		for(int block = 0; block < blocks; block++) {
+			offsets[block + 1] = offsets[block] + encode(values, block, null);
+		}
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(BLOCK_SIZE);
+			out.writeLong(material.getKey());
+			out.writeInt(values.length);
+			out.writeInt(blocks);
+			for (int offset : offsets) out.writeInt(offset);
+			for(int block = 0; block < blocks; block++) encode(values, block, out);
+		}
+	}
+	
+	/**
+	 * @param out Where the runs go, null to just count the bytes
+	 * @return How many bytes the block takes
+	 */
+	private static int encode(byte[] values, int block, DataOutputStream out) throws IOException {
+		int end = Math.min(values.length, (block + 1) * BLOCK_SIZE);
+		int bytes = 0;
+		for(int index = block * BLOCK_SIZE; index < end; ) {
+			int value = values[index] & 0xFF;
+			int length = 1;
+			for(; index + length < end && length < 256; length++) {
+				int next = values[index + length] & 0xFF;
+				if(next == value || next == Tablebase.NONE) continue;
+				if(value != Tablebase.NONE) break;
+				value = next;
+			}
+			if(out != null) {
+				out.writeByte(length - 1);
+				out.writeByte(value);
+			}
+			bytes += 2;
+			index += length;
+		}
+		return bytes;
+	}
+	
+	private static int blocks(int size) {
+		return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+}
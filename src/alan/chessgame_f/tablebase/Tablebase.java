@@ -0,0 +1,141 @@
+package alan.chessgame_f.tablebase;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.PieceType;
+
+/**
+ * The tables of a directory, see {@link TablebaseGenerator}. A probe tells how far the position is from mate:
+ *
+ * <pre>
+ * 0     : draw
+ * 1-254 : plies to mate + 1, odd plies the side to move mates, even plies it gets mated
+ * </pre>
+ *
+ * Probes read straight from the mapped files and can run on any number of threads. <br>
+ * The tables assume nobody can translocate any more, positions where a side with a rook still can are unknown.
+ */
+public final class Tablebase {
+	
+	public final static int UNKNOWN = -1;
+	public final static int DRAW = 0;
+	
+	/**
+	 * Value of an index that isn't a position.
+	 */
+	final static int NONE = 255;
+	
+	private final static int PIECE_TYPES = PieceType.values().length;
+	
+	private final long[] keys;
+	private final TableFile[] tables;
+	private final int maxPieces;
+	
+	private final ThreadLocal<long[]> bitboards = new ThreadLocal<long[]>() {
+		
+		@Override
+		protected long[] initialValue() {
+			return new long[PIECE_TYPES * 2];
+		}
+	};
+	
+	/**
+	 * Maps every table file in the directory.
+	 */
+	public Tablebase(Path directory) throws IOException {
+		List<TableFile> tables = new ArrayList<>();
+		if(Files.isDirectory(directory)) {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + TableFile.SUFFIX)) {
+				for (Path path : stream) tables.add(new TableFile(path));
+			}
+		}
+		this.tables = tables.toArray(new TableFile[tables.size()]);
+		keys = new long[this.tables.length];
+		int maxPieces = 0;
+		for(int i = 0; i < keys.length; i++) {
+			keys[i] = this.tables[i].material.getKey();
+			maxPieces = Math.max(maxPieces, this.tables[i].material.getPieces());
+		}
+		this.maxPieces = maxPieces;
+	}
+	
+	/**
+	 * @return The most pieces of any table, a position with more is never in the tablebase
+	 */
+	public int getMaxPieces() {
+		return maxPieces;
+	}
+	
+	public int getTables() {
+		return tables.length;
+	}
+	
+	/**
+	 * @return Whether there is a table of the material, either way around
+	 */
+	public boolean has(Material material) {
+		return find(material.getKey()) >= 0 || find(Material.flip(material.getKey())) >= 0;
+	}
+	
+	/**
+	 * @return The value for {@link Chessboard#getTurn()}, or {@link #UNKNOWN} if there's no table of it
+	 */
+	public int probe(Chessboard chessboard) {
+		if(Long.bitCount(chessboard.getOccupancy()) > maxPieces) return UNKNOWN;
+		long[] bitboards = this.bitboards.get();
+		for (Side side : Side.values()) {
+			for (PieceType type : PieceType.values()) {
+				bitboards[Material.bitboardIndex(side, type)] = chessboard.getBitboard(side, type);
+			}
+			if(!chessboard.isTranslocated(side) && chessboard.getBitboard(side, PieceType.ROOK) != 0) return UNKNOWN;
+		}
+		return probe(bitboards, chessboard.getTurn().ordinal());
+	}
+	
+	/**
+	 * @param bitboards The position, may be flipped for the table, see {@link Material#flip(long[])}
+	 * @param turn {@link Side#ordinal()} of the side to move
+	 */
+	int probe(long[] bitboards, int turn) {
+		long key = Material.key(bitboards);
+		int table = find(key);
+		if(table < 0) {
+			table = find(Material.flip(key));
+			if(table < 0) return UNKNOWN;
+			Material.flip(bitboards);
+			turn ^= 1;
+		}
+		int value = tables[table].get(tables[table].material.index(bitboards, turn));
+		return value == NONE ? UNKNOWN : value;
+	}
+	
+	public static boolean isWin(int value) {
+		return value > 0 && (value & 1) == 0;
+	}
+	
+	public static boolean isLoss(int value) {
+		return value > 0 && (value & 1) == 1;
+	}
+	
+	/**
+	 * @return How many plies to mate, by either side
+	 */
+	public static int getPlies(int value) {
+		return value - 1;
+	}
+	
+	private int find(long key) {
+		for(int i = 0; i < keys.length; i++) {
+			if(keys[i] == key) return i;
+		}
+		return -1;
+	}
+
+}
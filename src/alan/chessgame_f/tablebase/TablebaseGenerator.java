@@ -0,0 +1,249 @@
+package alan.chessgame_f.tablebase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import alan.chessgame_f.Chessboard;
+import alan.chessgame_f.Side;
+import alan.chessgame_f.chess.Move;
+import alan.chessgame_f.chess.Piece;
+import alan.chessgame_f.chess.PieceFactory;
+import alan.chessgame_f.chess.PieceType;
+import alan.chessgame_f.engine.Evaluation;
+
+/**
+ * Generates tables backwards from the mates, the moves come from the {@link Piece} rules via
+ * {@link Chessboard#generateLegalMoves(Side, int[])}. <br>
+ * First every position is set up once: mates are plies 0, and captures are looked up in the smaller tables,
+ * which are generated first. Then ply by ply, the positions one move before the newly decided ones are found
+ * by moving the pieces of the side that just moved backwards, which is the same as forwards without pawns.
+ * Before a win of the side to move, the other side wins. Before a loss, the position is lost once every move loses.
+ * What's left at the end is a draw. <br>
+ * A table takes a byte per index while it's generated, 5 pieces need a few GB.
+ *
+ * Usage: TablebaseGenerator [directory] [material...], e.g. TablebaseGenerator tables KQvK KRvK KQvKR
+ */
+public final class TablebaseGenerator {
+	
+	private final static int PIECE_TYPES = PieceType.values().length;
+	private final static int MAX_PLIES = 253;
+	private final static boolean[] TRANSLOCATED = {true, true};
+	
+	private final Path directory;
+	private Tablebase tablebase;
+	
+	private final Chessboard chessboard = new Chessboard();
+	private final Piece[] pieces = new Piece[PIECE_TYPES * 2];
+	private final Piece[] squares = new Piece[64];
+	private final int[] moves = new int[Move.MAX_MOVES];
+	private final long[] bitboards = new long[PIECE_TYPES * 2];
+	private final long[] child = new long[PIECE_TYPES * 2];
+	/**
+	 * Retracting checks the positions before on the ones above, it keeps its own.
+	 */
+	private final int[] retractMoves = new int[Move.MAX_MOVES];
+	private final long[] retracted = new long[PIECE_TYPES * 2];
+	private final long[] before = new long[PIECE_TYPES * 2];
+	
+	private Material material;
+	private byte[] values;
+	private int[][] layers;
+	private int[] layerSizes;
+	
+	public TablebaseGenerator(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		this.directory = directory;
+		tablebase = new Tablebase(directory);
+		for (Side side : Side.values()) {
+			for (PieceType type : PieceType.values()) {
+				if(type != PieceType.PAWN) pieces[Material.bitboardIndex(side, type)] = PieceFactory.createPiece(side, type);
+			}
+		}
+	}
+	
+	/**
+	 * Generates the table, and the smaller ones it needs, unless they are in the directory already.
+	 *
+	 * @return The tables of the directory after
+	 */
+	public Tablebase generate(Material material) throws IOException {
+		if(tablebase.has(material)) return tablebase;
+		for(int i = 0; i < PIECE_TYPES * 2; i++) {
+			if(i % PIECE_TYPES == PieceType.KING.ordinal() || (material.getKey() >>> (i * 4) & 0xF) == 0) continue;
+			generate(strongerFirst(Material.of(material.getKey() - (1L << (i * 4)))));
+		}
+		long start = System.nanoTime();
+		byte[] values = solve(material);
+		Path path = directory.resolve(material + TableFile.SUFFIX);
+		TableFile.write(path, material, values);
+		tablebase = new Tablebase(directory);
+		System.out.println(String.format("%s: %d indices, %d KB in %.1f s",
+				material, values.length, Files.size(path) >> 10, (System.nanoTime() - start) / 1e9));
+		return tablebase;
+	}
+	
+	private byte[] solve(Material material) {
+		this.material = material;
+		values = new byte[material.getSize()];
+		layers = new int[MAX_PLIES + 1][];
+		layerSizes = new int[MAX_PLIES + 1];
+		
+		for(int index = 0; index < values.length; index++) {
+			int turn = material.decode(index, bitboards);
+			if(turn < 0 || !load(bitboards, turn)) {
+				values[index] = (byte) Tablebase.NONE;
+				continue;
+			}
+			Side side = Side.values()[turn];
+			int count = chessboard.generateLegalMoves(side, moves);
+			if(count == 0) {
+				// Stalemates are left as draws
+				if(chessboard.isInCheck(side)) push(0, index);
+				continue;
+			}
+			int win = Integer.MAX_VALUE, loss = 0;
+			boolean lost = true;
+			for(int i = 0; i < count; i++) {
+				if(!Move.is(moves[i], Move.CAPTURE)) {
+					lost = false;
+					continue;
+				}
+				int value = childValue(moves[i], turn);
+				if(Tablebase.isLoss(value)) {
+					win = Math.min(win, value);
+				} else if(Tablebase.isWin(value)) {
+					loss = Math.max(loss, value);
+				} else lost = false;
+			}
+			// The value of the child is its plies + 1, which is the plies of this one
+			if(win != Integer.MAX_VALUE) push(win, index);
+			else if(lost) push(loss, index);
+		}
+		
+		for(int plies = 0; plies <= MAX_PLIES; plies++) {
+			for(int i = 0; i < layerSizes[plies]; i++) {
+				int index = layers[plies][i];
+				if(values[index] != 0) continue;
+				values[index] = (byte) (plies + 1);
+				retract(index, plies);
+			}
+			layers[plies] = null;
+		}
+		return values;
+	}
+	
+	/**
+	 * Finds the positions one move before, and what the decided one makes of them.
+	 */
+	private void retract(int index, int plies) {
+		int turn = material.decode(index, retracted);
+		load(retracted, turn);
+		Side mover = turn == Side.WHITE.ordinal() ? Side.BLACK : Side.WHITE;
+		int count = chessboard.generateMoves(mover, retractMoves);
+		for(int i = 0; i < count; i++) {
+			if(Move.is(retractMoves[i], Move.CAPTURE)) continue;
+			move(retracted, before, Move.from(retractMoves[i]), Move.to(retractMoves[i]));
+			int beforeIndex = material.index(before, mover.ordinal());
+			if(values[beforeIndex] != 0) continue;
+			if((plies & 1) == 0) {
+				push(plies + 1, beforeIndex);
+			} else {
+				int lost = lostPlies(beforeIndex);
+				if(lost >= 0) push(lost, beforeIndex);
+			}
+		}
+	}
+	
+	/**
+	 * @return The plies if every move of the position loses, -1 if not yet
+	 */
+	private int lostPlies(int index) {
+		int turn = material.decode(index, bitboards);
+		load(bitboards, turn);
+		int count = chessboard.generateLegalMoves(Side.values()[turn], moves);
+		int lost = 0;
+		for(int i = 0; i < count; i++) {
+			int value = childValue(moves[i], turn);
+			if(!Tablebase.isWin(value)) return -1;
+			lost = Math.max(lost, value);
+		}
+		return lost;
+	}
+	
+	/**
+	 * @param turn The side playing the move, of the position in {@link #bitboards}
+	 * @return The value of the position after the move, for the other side
+	 */
+	private int childValue(int move, int turn) {
+		move(bitboards, child, Move.from(move), Move.to(move));
+		if(!Move.is(move, Move.CAPTURE)) {
+			return values[material.index(child, turn ^ 1)] & 0xFF;
+		}
+		int value = tablebase.probe(child, turn ^ 1);
+		if(value == Tablebase.UNKNOWN) throw new IllegalStateException("No table after " + Move.toString(move) + " in " + material);
+		return value;
+	}
+	
+	/**
+	 * Copies the position to the child with the piece moved, and whatever stood on the destination taken.
+	 */
+	private static void move(long[] bitboards, long[] child, int from, int to) {
+		long fromBit = 1L << from, toBit = 1L << to;
+		for(int i = 0; i < bitboards.length; i++) {
+			long bitboard = bitboards[i] & ~toBit;
+			if((bitboard & fromBit) != 0) bitboard = bitboard & ~fromBit | toBit;
+			child[i] = bitboard;
+		}
+	}
+	
+	/**
+	 * Sets up the position on the chess-board.
+	 *
+	 * @return Whether it's a legal one, the side that isn't to move is not in check
+	 */
+	private boolean load(long[] bitboards, int turn) {
+		Arrays.fill(squares, null);
+		for(int i = 0; i < bitboards.length; i++) {
+			for(long bitboard = bitboards[i]; bitboard != 0; bitboard &= bitboard - 1) {
+				squares[Long.numberOfTrailingZeros(bitboard)] = pieces[i];
+			}
+		}
+		Side side = Side.values()[turn];
+		chessboard.load(squares, side, TRANSLOCATED, -1);
+		return !chessboard.isInCheck(side == Side.WHITE ? Side.BLACK : Side.WHITE);
+	}
+	
+	private void push(int plies, int index) {
+		if(plies > MAX_PLIES) throw new IllegalStateException("Mate too far for a byte in " + material);
+		int[] layer = layers[plies];
+		if(layer == null) layer = layers[plies] = new int[1024];
+		if(layerSizes[plies] == layer.length) layer = layers[plies] = Arrays.copyOf(layer, layer.length * 2);
+		layer[layerSizes[plies]++] = index;
+	}
+	
+	/**
+	 * @return The material the way around with more on white's side, smaller tables are generated that way
+	 */
+	private static Material strongerFirst(Material material) {
+		long key = material.getKey();
+		int white = 0, black = 0;
+		for (PieceType type : PieceType.values()) {
+			white += Evaluation.value(type) * (int) (key >>> (Material.bitboardIndex(Side.WHITE, type) * 4) & 0xF);
+			black += Evaluation.value(type) * (int) (key >>> (Material.bitboardIndex(Side.BLACK, type) * 4) & 0xF);
+		}
+		return black > white ? Material.of(Material.flip(key)) : material;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.out.println("Usage: TablebaseGenerator [directory] [material...]");
+			return;
+		}
+		TablebaseGenerator generator = new TablebaseGenerator(Paths.get(args[0]));
+		for(int i = 1; i < args.length; i++) generator.generate(Material.parse(args[i]));
+	}
+
+}
@@ -4,6 +4,16 @@ public class Coordinate2D {
 	
 	private final static int hashStart = 0x1234ABCD;
 	
+	/**
+	 * Coordinates on the 8x8 chess-board, indexed as y*8+x.
+	 */
+	private final static Coordinate2D[] BOARD_COORDS = new Coordinate2D[64];
+	static {
+		for(int i=0;i<64;i++) {
+			BOARD_COORDS[i] = new Coordinate2D(i & 7, i >>> 3);
+		}
+	}
+	
 	public final int x;
 	public final int y;
 	
@@ -12,6 +22,21 @@ public class Coordinate2D {
 		this.y = y;
 	}
 	
+	/**
+	 * Coordinates on the chess-board are shared instances, anything else is newly created.
+	 */
+	public static Coordinate2D of(int x, int y) {
+		if(x >= 0 && x < 8 && y >= 0 && y < 8) return BOARD_COORDS[(y<<3)|x];
+		return new Coordinate2D(x, y);
+	}
+	
+	/**
+	 * @param square Square index of chess-board, as y*8+x
+	 */
+	public static Coordinate2D of(int square) {
+		return BOARD_COORDS[square];
+	}
+	
 	@Override
 	public boolean equals(Object obj) {
 		if(obj instanceof Coordinate2D) {
@@ -40,15 +65,15 @@ public class Coordinate2D {
 	}
 	
 	public Coordinate2D add(Coordinate2D addon) {
-		return new Coordinate2D(x + addon.x, y + addon.y);
+		return of(x + addon.x, y + addon.y);
 	}
 	
 	public Coordinate2D minus(Coordinate2D subtrahend) {
-		return new Coordinate2D(x - subtrahend.x, y - subtrahend.y);
+		return of(x - subtrahend.x, y - subtrahend.y);
 	}
 	
 	public Coordinate2D invert(){
-		return new Coordinate2D(-x, -y);
+		return of(-x, -y);
 	}
 
 }